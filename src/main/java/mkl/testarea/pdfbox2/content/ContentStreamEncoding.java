@@ -0,0 +1,134 @@
+package mkl.testarea.pdfbox2.content;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.filter.Filter;
+
+/**
+ * <p>
+ * This class is the encoding policy for content streams created by the content
+ * stream editing classes, e.g. {@link PdfContentStreamEditor}, {@link ParallelPageEditor},
+ * {@link PdfContentStreamRewriter}, and {@link HelloSignManipulator}.
+ * </p>
+ * <p>
+ * The PDFBox <code>FlateFilter</code> only supports a global compression level set
+ * by the system property <code>org.apache.pdfbox.filter.deflatelevel</code>. Thus,
+ * this class deflates itself with the configured level and writes the result as
+ * raw stream data. {@link #DEFAULT} determines its level like PDFBox does, i.e.
+ * it honors that system property at the time of encoding. Uncompressed streams
+ * may be useful for short-lived intermediate documents or for debugging.
+ * </p>
+ *
+ * @author mkl
+ */
+public class ContentStreamEncoding {
+    /** marks the level to be determined by PDFBox at the time of encoding */
+    final static int PDFBOX_LEVEL = Integer.MIN_VALUE;
+
+    /** Flate encoding optimized for speed */
+    public final static ContentStreamEncoding FASTEST = flate(Deflater.BEST_SPEED);
+    /** Flate encoding with the compression level PDFBox uses, see {@link Filter#getCompressionLevel()} */
+    public final static ContentStreamEncoding DEFAULT = new ContentStreamEncoding(true, PDFBOX_LEVEL);
+    /** Flate encoding optimized for size */
+    public final static ContentStreamEncoding SMALLEST = flate(Deflater.BEST_COMPRESSION);
+    /** No encoding at all */
+    public final static ContentStreamEncoding UNCOMPRESSED = new ContentStreamEncoding(false, 0);
+
+    /**
+     * @param level a {@link Deflater} compression level from 0 to 9 or -1 for the default
+     */
+    public static ContentStreamEncoding flate(int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+            throw new IllegalArgumentException(String.format("Deflate level must be between -1 and 9; value: %s.", level));
+        return new ContentStreamEncoding(true, level);
+    }
+
+    ContentStreamEncoding(boolean compressed, int level) {
+        this.compressed = compressed;
+        this.level = level;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * @return the {@link Deflater} compression level to use now; for {@link #DEFAULT}
+     * it is determined by PDFBox from the system property at each call.
+     */
+    public int getLevel() {
+        return level == PDFBOX_LEVEL ? Filter.getCompressionLevel() : level;
+    }
+
+    /**
+     * Creates an output stream writing the given stream, encoding the written
+     * data according to this policy. The stream must be closed to finish.
+     */
+    public OutputStream createOutputStream(COSStream stream) throws IOException {
+        setFilter(stream);
+        OutputStream rawStream = stream.createRawOutputStream();
+        if (!compressed)
+            return rawStream;
+        Deflater deflater = new Deflater(getLevel());
+        return new DeflaterOutputStream(rawStream, deflater) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Encodes the given content according to this policy, e.g. in a worker thread,
+     * for a later {@link #setEncoded(COSStream, byte[])} call.
+     */
+    public byte[] encode(ByteArrayOutputStream content) throws IOException {
+        if (!compressed)
+            return content.toByteArray();
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(getLevel());
+        try (   OutputStream outputStream = new DeflaterOutputStream(encoded, deflater)   ) {
+            content.writeTo(outputStream);
+        } finally {
+            deflater.end();
+        }
+        return encoded.toByteArray();
+    }
+
+    /**
+     * Sets the given content encoded by {@link #encode(ByteArrayOutputStream)} of
+     * this policy as data of the given stream.
+     */
+    public void setEncoded(COSStream stream, byte[] encoded) throws IOException {
+        setFilter(stream);
+        try (   OutputStream outputStream = stream.createRawOutputStream()   ) {
+            outputStream.write(encoded);
+        }
+    }
+
+    void setFilter(COSStream stream) {
+        stream.removeItem(COSName.DECODE_PARMS);
+        if (compressed)
+            stream.setItem(COSName.FILTER, COSName.FLATE_DECODE);
+        else
+            stream.removeItem(COSName.FILTER);
+    }
+
+    @Override
+    public String toString() {
+        return compressed ? String.format("Flate level %s", getLevel()) : "uncompressed";
+    }
+
+    final boolean compressed;
+    final int level;
+}
@@ -48,6 +48,15 @@ public class HelloSignManipulator extends PDFTextStripper
         addOperator(new SelectiveDrawObject());
     }
 
+    /**
+     * Sets the encoding of the replacement form XObject content; by default
+     * {@link ContentStreamEncoding#DEFAULT}.
+     */
+    public void setContentEncoding(ContentStreamEncoding contentEncoding)
+    {
+        this.contentEncoding = contentEncoding;
+    }
+
     public void clearFields(Iterable<String> fieldNames) throws IOException
     {
         try
@@ -110,7 +119,7 @@ public class HelloSignManipulator extends PDFTextStripper
                 formReplacement.setFormType(form.getFormType());
                 formReplacement.setMatrix(form.getMatrix().createAffineTransform());
                 formReplacement.setResources(form.getResources());
-                OutputStream outputStream = formReplacement.getContentStream().createOutputStream(COSName.FLATE_DECODE);
+                OutputStream outputStream = contentEncoding.createOutputStream(formReplacement.getCOSObject());
                 replacement = new ContentStreamWriter(outputStream);
                 
                 context.showForm(form);
@@ -167,4 +176,5 @@ public class HelloSignManipulator extends PDFTextStripper
     final Collection<String> TjTJ = Arrays.asList("Tj", "TJ");
     Iterable<HelloSignField> fields;
     ContentStreamWriter replacement = null;
+    ContentStreamEncoding contentEncoding = ContentStreamEncoding.DEFAULT;
 }
@@ -0,0 +1,165 @@
+package mkl.testarea.pdfbox2.content;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+
+/**
+ * <p>
+ * This class applies a {@link PdfContentStreamEditor} to all pages of a document
+ * concurrently. The pages are split into contiguous ranges, one per worker, and
+ * each worker edits its pages into per page buffers which it also encodes.
+ * Afterwards the buffers are attached as new content streams to the pages of the
+ * original document in page order on the calling thread. Pages the editor does
+ * not change keep their original content streams.
+ * </p>
+ * <p>
+ * As a {@link PDDocument} is not thread safe, the document is serialized once and
+ * each worker loads its own copy of it which is not shared with any other thread.
+ * Thus, editors must only change the content streams; changes of resources or
+ * other objects are made in the worker copy and get lost. For the same reason
+ * editors must not edit form XObjects, see {@link PdfContentStreamEditor#setEditedForms(java.util.Map)};
+ * this is rejected with an {@link IllegalStateException}. The resulting content
+ * streams do not depend on the parallelism.
+ * </p>
+ * <p>
+ * Beware, serializing the document is not free of side effects: like any
+ * {@link PDDocument#save(java.io.OutputStream)} call it subsets the fonts
+ * loaded for subsetting and afterwards forgets them, so fonts added before
+ * editing cannot be extended anymore. Furthermore, each worker parses the
+ * whole serialized document, so the overhead grows with the parallelism;
+ * for small documents or few pages sequential editing may well be faster.
+ * </p>
+ *
+ * @author mkl
+ */
+public class ParallelPageEditor {
+    /**
+     * Creates the editor for a single page of a worker document copy.
+     */
+    public interface EditorFactory {
+        PdfContentStreamEditor createEditor(PDDocument document, PDPage page) throws IOException;
+    }
+
+    public ParallelPageEditor(EditorFactory editorFactory, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException(String.format("Parallelism must be positive; value: %s.", parallelism));
+        this.editorFactory = editorFactory;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets the encoding of the new content streams; by default
+     * {@link ContentStreamEncoding#DEFAULT}. As the pages are encoded
+     * by this class, the encoding set in the page editors is ignored.
+     */
+    public void setContentEncoding(ContentStreamEncoding contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * Edits all pages of the given document.
+     */
+    public void edit(PDDocument document) throws IOException {
+        int pageCount = document.getNumberOfPages();
+        if (pageCount == 0)
+            return;
+
+        ByteArrayOutputStream sourceBytes = new ByteArrayOutputStream();
+        document.save(sourceBytes);
+        byte[] source = sourceBytes.toByteArray();
+        sourceBytes = null;
+
+        int workers = Math.min(parallelism, pageCount);
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<List<byte[]>>> futures = new ArrayList<>(workers);
+            for (int worker = 0; worker < workers; worker++) {
+                int from = (int) ((long) worker * pageCount / workers);
+                int to = (int) ((long) (worker + 1) * pageCount / workers);
+                futures.add(executor.submit(() -> edit(source, from, to)));
+            }
+
+            Iterator<PDPage> pages = document.getPages().iterator();
+            for (Future<List<byte[]>> future : futures) {
+                for (byte[] content : get(future)) {
+                    PDPage page = pages.next();
+                    if (content != null)
+                        attach(document, page, content, contentEncoding);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the encoded edited contents of the pages from <code>from</code>
+     * (inclusive) to <code>to</code> (exclusive) of a copy of the given document,
+     * <code>null</code> for unchanged pages.
+     */
+    List<byte[]> edit(byte[] source, int from, int to) throws IOException {
+        try (   PDDocument copy = Loader.loadPDF(source)   ) {
+            List<byte[]> contents = new ArrayList<>(to - from);
+            for (int pageIndex = from; pageIndex < to; pageIndex++) {
+                PDPage page = copy.getPage(pageIndex);
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                PdfContentStreamEditor editor = editorFactory.createEditor(copy, page);
+                if (editor.editedForms != null)
+                    throw new IllegalStateException("Editors of a parallel page editor must not edit form XObjects.");
+                editor.processPage(page, buffer);
+                if (editor.isChanged()) {
+                    contents.add(contentEncoding.encode(buffer));
+                } else {
+                    contents.add(null);
+                }
+            }
+            return contents;
+        }
+    }
+
+    /**
+     * Sets the given content encoded with the given encoding as the new content of the page.
+     */
+    static void attach(PDDocument document, PDPage page, byte[] content, ContentStreamEncoding contentEncoding) throws IOException {
+        PDStream stream = new PDStream(document);
+        contentEncoding.setEncoded(stream.getCOSObject(), content);
+        page.setContents(stream);
+    }
+
+    static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interruptedIOException = new InterruptedIOException("Interrupted while waiting for page editing.");
+            interruptedIOException.initCause(e);
+            throw interruptedIOException;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    final EditorFactory editorFactory;
+    final int parallelism;
+    ContentStreamEncoding contentEncoding = ContentStreamEncoding.DEFAULT;
+}
@@ -1,19 +1,26 @@
 package mkl.testarea.pdfbox2.content;
 
 import java.awt.geom.Point2D;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine;
 import org.apache.pdfbox.contentstream.operator.Operator;
 import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
 import org.apache.pdfbox.pdfwriter.ContentStreamWriter;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
 import org.apache.pdfbox.pdmodel.common.PDStream;
 import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDTransparencyGroup;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
 
 /**
@@ -27,6 +34,20 @@ import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
  * the given operations as they are but change them in some fancy way.
  * </p>
  * <p>
+ * If the editing does not change or drop any operation, i.e. if exactly the original
+ * operand and operator objects are written in their original order, the original
+ * content streams are kept as they are, see {@link #isChanged()}.
+ * </p>
+ * <p>
+ * By default form XObjects are not edited. After {@link #setEditedForms(Map)} they
+ * are edited recursively, too, see there.
+ * </p>
+ * <p>
+ * For edits which only require the font, text line matrix, or transformation matrix,
+ * the {@link PdfContentStreamRewriter} is much faster as it does not interpret the
+ * operations.
+ * </p>
+ * <p>
  * This is a port of the iText 5 test area class <code>PdfContentStreamEditor</code>
  * and the iText 7 test area class <code>PdfCanvasEditor</code>.
  * </p>
@@ -39,6 +60,38 @@ public class PdfContentStreamEditor extends PDFGraphicsStreamEngine {
         this.document = document;
     }
 
+    /**
+     * Sets the encoding of the content streams created by this editor;
+     * by default {@link ContentStreamEncoding#DEFAULT}.
+     */
+    public void setContentEncoding(ContentStreamEncoding contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * <p>
+     * Switches on the editing of form XObjects. Each form XObject drawn is edited
+     * into a new form XObject which replaces it in the resources of the page or
+     * form drawing it. The given map caches these replacements keyed by the stream
+     * of the original form XObject; thus, sharing the map between the editors of
+     * all pages of a document, each distinct form XObject is edited only once and
+     * its replacement is re-used wherever the original is drawn.
+     * </p>
+     * <p>
+     * Beware, the replacement is created in the graphics state of the first use of
+     * the form XObject. If edits depend on the graphics state, e.g. on the current
+     * transformation matrix, the form XObject in other uses is edited as in that
+     * first one. Furthermore, changed resource dictionaries are edited in place, so
+     * other pages sharing them also draw the replacements.
+     * </p>
+     * <p>
+     * Setting <code>null</code> switches editing of form XObjects off again.
+     * </p>
+     */
+    public void setEditedForms(Map<COSStream, PDFormXObject> editedForms) {
+        this.editedForms = editedForms;
+    }
+
     /**
      * <p>
      * This method retrieves the next operation before its registered
@@ -109,22 +162,142 @@ public class PdfContentStreamEditor extends PDFGraphicsStreamEngine {
     @Override
     public void shadingFill(COSName shadingName) throws IOException { }
 
+    /**
+     * <p>
+     * This method returns whether the most recently processed page content has been
+     * changed, i.e. whether any operation has been changed, dropped, or added by
+     * {@link #write(ContentStreamWriter, Operator, List)}.
+     * </p>
+     * <p>
+     * Operations count as unchanged if the very operand and operator objects handed
+     * to that method are written to the given writer in their original order. Thus,
+     * edits must not change operand objects in place, e.g. the array operand of a
+     * <code>TJ</code> operation, but write changed copies instead.
+     * </p>
+     */
+    public boolean isChanged() {
+        return changed;
+    }
+
     // PDFStreamEngine overrides to allow editing
     @Override
     public void processPage(PDPage page) throws IOException {
-        PDStream stream = new PDStream(document);
-        replacement = new ContentStreamWriter(replacementStream = stream.createOutputStream(COSName.FLATE_DECODE));
-        super.processPage(page);
-        replacementStream.close();
-        page.setContents(stream);
-        replacement = null;
-        replacementStream = null;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        processPage(page, buffer);
+        if (changed) {
+            PDStream stream = new PDStream(document);
+            try (   OutputStream outputStream = contentEncoding.createOutputStream(stream.getCOSObject())   ) {
+                buffer.writeTo(outputStream);
+            }
+            page.setContents(stream);
+        }
+    }
+
+    /**
+     * Writes the edited content of the given page to the given output stream
+     * instead of replacing the page content, e.g. for the {@link ParallelPageEditor}.
+     * Use {@link #isChanged()} to check whether the content actually has changed.
+     */
+    public void processPage(PDPage page, OutputStream outputStream) throws IOException {
+        TrackingContentStreamWriter writer = new TrackingContentStreamWriter(outputStream);
+        replacement = writer;
+        replacementStream = outputStream;
+        changed = false;
+        try {
+            super.processPage(page);
+            changed = writer.changed;
+        } finally {
+            replacement = null;
+            replacementStream = null;
+            replacementResources = null;
+        }
     }
 
     @Override
     public void showForm(PDFormXObject form) throws IOException {
-        // DON'T descend into XObjects
-        // super.showForm(form);
+        if (editedForms != null)
+            editForm(form);
+        // otherwise DON'T descend into XObjects
+    }
+
+    @Override
+    public void showTransparencyGroup(PDTransparencyGroup form) throws IOException {
+        if (editedForms != null)
+            editForm(form);
+        else
+            super.showTransparencyGroup(form);
+    }
+
+    /**
+     * Replaces the form XObject drawn by the current <code>Do</code> operation by
+     * its edited copy, editing it first unless it already is in the cache. If the
+     * editing does not change the form XObject, the original is kept.
+     */
+    void editForm(PDFormXObject form) throws IOException {
+        COSName name = currentXObjectName;
+        PDResources resources = replacementResources != null ? replacementResources : getResources();
+        if (name == null || resources == null)
+            return;
+
+        PDFormXObject formReplacement = editedForms.get(form.getCOSObject());
+        if (formReplacement == null) {
+            PDResources formResources = form.getResources();
+            COSDictionary resourcesCopy = null;
+            if (formResources != null) {
+                resourcesCopy = new COSDictionary(formResources.getCOSObject());
+                COSDictionary xobjects = resourcesCopy.getCOSDictionary(COSName.XOBJECT);
+                if (xobjects != null)
+                    resourcesCopy.setItem(COSName.XOBJECT, new COSDictionary(xobjects));
+            }
+            // cache before editing to not recurse into self-referencing forms
+            editedForms.put(form.getCOSObject(), form);
+
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            TrackingContentStreamWriter writer = new TrackingContentStreamWriter(buffer);
+            OutputStream parentStream = replacementStream;
+            TrackingContentStreamWriter parentWriter = replacement;
+            PDResources parentResources = replacementResources;
+            try {
+                replacement = writer;
+                replacementStream = buffer;
+                if (resourcesCopy != null)
+                    replacementResources = new PDResources(resourcesCopy);
+                inOperator = false;
+                if (form instanceof PDTransparencyGroup)
+                    super.showTransparencyGroup((PDTransparencyGroup) form);
+                else
+                    super.showForm(form);
+            } finally {
+                inOperator = true;
+                replacement = parentWriter;
+                replacementStream = parentStream;
+                replacementResources = parentResources;
+            }
+
+            if (writer.changed) {
+                COSStream stream = document.getDocument().createCOSStream();
+                for (Map.Entry<COSName, COSBase> entry : form.getCOSObject().entrySet()) {
+                    if (!STREAM_ENCODING_KEYS.contains(entry.getKey()))
+                        stream.setItem(entry.getKey(), entry.getValue());
+                }
+                if (resourcesCopy != null)
+                    stream.setItem(COSName.RESOURCES, resourcesCopy);
+                try (   OutputStream outputStream = contentEncoding.createOutputStream(stream)   ) {
+                    buffer.writeTo(outputStream);
+                }
+                formReplacement = new PDFormXObject(stream);
+            } else {
+                formReplacement = form;
+            }
+            editedForms.put(form.getCOSObject(), formReplacement);
+        }
+
+        if (formReplacement != form) {
+            resources.put(name, formReplacement);
+            // a form drawing a replaced form must be replaced, too
+            if (replacementResources != null)
+                replacement.changed = true;
+        }
     }
 
     @Override
@@ -133,15 +306,100 @@ public class PdfContentStreamEditor extends PDFGraphicsStreamEngine {
             super.processOperator(operator, operands);
         } else {
             inOperator = true;
+            if ("Do".equals(operator.getName()) && !operands.isEmpty() && operands.get(0) instanceof COSName)
+                currentXObjectName = (COSName) operands.get(0);
+            else
+                currentXObjectName = null;
             nextOperation(operator, operands);
             super.processOperator(operator, operands);
-            write(replacement, operator, operands);
+            TrackingContentStreamWriter writer = replacement;
+            writer.expect(operator, operands);
+            write(writer, operator, operands);
+            writer.check();
             inOperator = false;
         }
     }
 
+    /**
+     * A {@link ContentStreamWriter} which checks whether the written tokens are
+     * exactly the original operands and operator of the current operation.
+     */
+    static class TrackingContentStreamWriter extends ContentStreamWriter {
+        TrackingContentStreamWriter(OutputStream output) {
+            super(output);
+        }
+
+        void expect(Operator operator, List<COSBase> operands) {
+            expectedOperator = operator;
+            expectedOperands = operands;
+            position = 0;
+        }
+
+        void check() {
+            if (expectedOperands == null || position != expectedOperands.size() + 1)
+                changed = true;
+            expectedOperator = null;
+            expectedOperands = null;
+        }
+
+        void track(Object token) {
+            if (changed)
+                return;
+            Object expectedToken = null;
+            if (expectedOperands != null) {
+                if (position < expectedOperands.size())
+                    expectedToken = expectedOperands.get(position);
+                else if (position == expectedOperands.size())
+                    expectedToken = expectedOperator;
+            }
+            if (expectedToken != null && expectedToken == token)
+                position++;
+            else
+                changed = true;
+        }
+
+        @Override
+        public void writeToken(COSBase base) throws IOException {
+            track(base);
+            super.writeToken(base);
+        }
+
+        @Override
+        public void writeToken(Operator op) throws IOException {
+            track(op);
+            super.writeToken(op);
+        }
+
+        @Override
+        public void writeTokens(Object... tokens) throws IOException {
+            for (Object token : tokens)
+                track(token);
+            super.writeTokens(tokens);
+        }
+
+        @Override
+        public void writeTokens(List<?> tokens) throws IOException {
+            for (Object token : tokens)
+                track(token);
+            super.writeTokens(tokens);
+        }
+
+        Operator expectedOperator = null;
+        List<COSBase> expectedOperands = null;
+        int position = 0;
+        boolean changed = false;
+    }
+
+    final static List<COSName> STREAM_ENCODING_KEYS = Arrays.asList(COSName.LENGTH, COSName.FILTER, COSName.DECODE_PARMS,
+            COSName.F, COSName.F_FILTER, COSName.F_DECODE_PARMS, COSName.DL);
+
     final PDDocument document;
     OutputStream replacementStream = null;
-    ContentStreamWriter replacement = null;
+    TrackingContentStreamWriter replacement = null;
     boolean inOperator = false;
+    boolean changed = false;
+    ContentStreamEncoding contentEncoding = ContentStreamEncoding.DEFAULT;
+    Map<COSStream, PDFormXObject> editedForms = null;
+    PDResources replacementResources = null;
+    COSName currentXObjectName = null;
 }
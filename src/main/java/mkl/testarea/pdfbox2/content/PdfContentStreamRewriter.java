@@ -0,0 +1,320 @@
+package mkl.testarea.pdfbox2.content;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdfwriter.ContentStreamWriter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.util.Matrix;
+
+/**
+ * <a href="https://stackoverflow.com/questions/58475104/filter-out-all-text-above-a-certain-font-size-from-pdf">
+ * Filter out all text above a certain font size from PDF
+ * </a>
+ * <p>
+ * This class is a lightweight alternative to the {@link PdfContentStreamEditor} for
+ * edits which only need a little state information. Instead of interpreting each
+ * operation in a {@link org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine},
+ * it streams the tokens of the page content from the {@link PDFStreamParser} to the
+ * {@link #write(ContentStreamWriter, Operator, List)} method and only tracks the
+ * {@link TrackedState} requested in the constructor. Fonts are not loaded unless
+ * {@link #getFont()} is called.
+ * </p>
+ * <p>
+ * As glyph widths are not determined, the tracked text matrix is the text line
+ * matrix, i.e. the text matrix at the start of the current line; it is not advanced
+ * by text showing operations. For decisions based on the text size or the line
+ * start, e.g. in {@link #getEffectiveFontSize()}, this makes no difference.
+ * </p>
+ *
+ * @author mkl
+ */
+public class PdfContentStreamRewriter {
+    public enum TrackedState {
+        /** the nesting depth of save and restore graphics state operations */
+        GRAPHICS_STATE_DEPTH,
+        /** the font resource name and font size */
+        FONT,
+        /** the text line matrix and leading */
+        TEXT_MATRIX,
+        /** the current transformation matrix */
+        TRANSFORMATION_MATRIX
+    }
+
+    public PdfContentStreamRewriter(PDDocument document, Set<TrackedState> trackedState) {
+        this.document = document;
+        this.trackedState = trackedState.isEmpty() ? EnumSet.noneOf(TrackedState.class) : EnumSet.copyOf(trackedState);
+    }
+
+    /**
+     * <p>
+     * This method writes content stream operations to the target. The default
+     * implementation writes them as they come, so it essentially generates
+     * identical copies of the original instructions.
+     * </p>
+     * <p>
+     * Override this method to achieve some fancy editing effect. Like in the
+     * {@link PdfContentStreamEditor}, the tracked state values already include
+     * the effects of the operation.
+     * </p>
+     */
+    protected void write(ContentStreamWriter contentStreamWriter, Operator operator, List<COSBase> operands) throws IOException {
+        contentStreamWriter.writeTokens(operands);
+        contentStreamWriter.writeToken(operator);
+    }
+
+    /**
+     * Sets the encoding of the new content streams; by default
+     * {@link ContentStreamEncoding#DEFAULT}.
+     */
+    public void setContentEncoding(ContentStreamEncoding contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * Rewrites the content of the given page into a new content stream.
+     */
+    public void processPage(PDPage page) throws IOException {
+        PDStream stream = new PDStream(document);
+        try (   OutputStream replacementStream = contentEncoding.createOutputStream(stream.getCOSObject())  ) {
+            rewrite(page, replacementStream);
+        }
+        page.setContents(stream);
+    }
+
+    /**
+     * Rewrites the content of the given page to the given output stream.
+     */
+    public void rewrite(PDPage page, OutputStream outputStream) throws IOException {
+        resources = page.getResources();
+        resetState();
+        ContentStreamWriter writer = new ContentStreamWriter(outputStream);
+        if (page.hasContents()) {
+            PDFStreamParser parser = new PDFStreamParser(page);
+            List<COSBase> operands = new ArrayList<>();
+            Object token;
+            while ((token = parser.parseNextToken()) != null) {
+                if (token instanceof Operator) {
+                    Operator operator = (Operator) token;
+                    track(operator, operands);
+                    write(writer, operator, operands);
+                    operands = new ArrayList<>();
+                } else if (token instanceof COSBase) {
+                    operands.add((COSBase) token);
+                }
+            }
+        }
+        resources = null;
+        fonts.clear();
+    }
+
+    //
+    // tracked state
+    //
+    /**
+     * @return the number of currently unrestored save graphics state operations.
+     */
+    protected int getGraphicsStateDepth() {
+        requireTracked(TrackedState.GRAPHICS_STATE_DEPTH);
+        return depth;
+    }
+
+    /**
+     * @return the resource name of the current font or <code>null</code> if none is set.
+     */
+    protected COSName getFontName() {
+        requireTracked(TrackedState.FONT);
+        return state.fontName;
+    }
+
+    protected float getFontSize() {
+        requireTracked(TrackedState.FONT);
+        return state.fontSize;
+    }
+
+    /**
+     * @return the current font loaded from the page resources or <code>null</code>
+     * if none is set or it cannot be found.
+     */
+    protected PDFont getFont() throws IOException {
+        COSName fontName = getFontName();
+        if (fontName == null || resources == null)
+            return null;
+        PDFont font = fonts.get(fontName);
+        if (font == null && !fonts.containsKey(fontName)) {
+            font = resources.getFont(fontName);
+            fonts.put(fontName, font);
+        }
+        return font;
+    }
+
+    /**
+     * @return the text line matrix; outside of text objects, the one of the most recent text object.
+     */
+    protected Matrix getTextLineMatrix() {
+        requireTracked(TrackedState.TEXT_MATRIX);
+        return textLineMatrix.clone();
+    }
+
+    protected Matrix getCurrentTransformationMatrix() {
+        requireTracked(TrackedState.TRANSFORMATION_MATRIX);
+        return state.ctm.clone();
+    }
+
+    /**
+     * @return the font size in default user space units, determined like in
+     * the font size based filters of the {@link PdfContentStreamEditor} tests;
+     * requires the font, text matrix, and transformation matrix to be tracked.
+     */
+    protected double getEffectiveFontSize() {
+        float fontSize = getFontSize();
+        Matrix matrix = getTextLineMatrix().multiply(getCurrentTransformationMatrix());
+        Point2D.Float transformedFsVector = matrix.transformPoint(0, fontSize);
+        Point2D.Float transformedOrigin = matrix.transformPoint(0, 0);
+        return transformedFsVector.distance(transformedOrigin);
+    }
+
+    void requireTracked(TrackedState requiredState) {
+        if (!trackedState.contains(requiredState))
+            throw new IllegalStateException(String.format("State %s is not tracked.", requiredState));
+    }
+
+    void resetState() {
+        depth = 0;
+        state = new GraphicsState();
+        savedStates.clear();
+        textLineMatrix = new Matrix();
+    }
+
+    void track(Operator operator, List<COSBase> operands) {
+        switch (operator.getName()) {
+        case "q":
+            depth++;
+            if (tracksGraphicsState()) {
+                savedStates.push(state);
+                state = state.copy();
+            }
+            break;
+        case "Q":
+            if (depth > 0) {
+                depth--;
+                if (tracksGraphicsState() && !savedStates.isEmpty())
+                    state = savedStates.pop();
+            }
+            break;
+        case "cm":
+            if (trackedState.contains(TrackedState.TRANSFORMATION_MATRIX) && operands.size() >= 6 && allNumbers(operands, 6))
+                state.ctm = matrix(operands).multiply(state.ctm);
+            break;
+        case "Tf":
+            if (trackedState.contains(TrackedState.FONT) && operands.size() >= 2) {
+                if (operands.get(0) instanceof COSName)
+                    state.fontName = (COSName) operands.get(0);
+                if (operands.get(1) instanceof COSNumber)
+                    state.fontSize = ((COSNumber) operands.get(1)).floatValue();
+            }
+            break;
+        case "BT":
+            if (trackedState.contains(TrackedState.TEXT_MATRIX))
+                textLineMatrix = new Matrix();
+            break;
+        case "TL":
+            if (trackedState.contains(TrackedState.TEXT_MATRIX) && operands.size() >= 1 && allNumbers(operands, 1))
+                state.leading = ((COSNumber) operands.get(0)).floatValue();
+            break;
+        case "Td":
+        case "TD":
+            if (trackedState.contains(TrackedState.TEXT_MATRIX) && operands.size() >= 2 && allNumbers(operands, 2)) {
+                float tx = ((COSNumber) operands.get(0)).floatValue();
+                float ty = ((COSNumber) operands.get(1)).floatValue();
+                if ("TD".equals(operator.getName()))
+                    state.leading = -ty;
+                nextLine(tx, ty);
+            }
+            break;
+        case "Tm":
+            if (trackedState.contains(TrackedState.TEXT_MATRIX) && operands.size() >= 6 && allNumbers(operands, 6))
+                textLineMatrix = matrix(operands);
+            break;
+        case "T*":
+        case "'":
+        case "\"":
+            if (trackedState.contains(TrackedState.TEXT_MATRIX))
+                nextLine(0, -state.leading);
+            break;
+        default:
+        }
+    }
+
+    boolean tracksGraphicsState() {
+        return trackedState.contains(TrackedState.FONT) || trackedState.contains(TrackedState.TEXT_MATRIX)
+                || trackedState.contains(TrackedState.TRANSFORMATION_MATRIX);
+    }
+
+    void nextLine(float tx, float ty) {
+        textLineMatrix = new Matrix(1, 0, 0, 1, tx, ty).multiply(textLineMatrix);
+    }
+
+    static boolean allNumbers(List<COSBase> operands, int count) {
+        for (int i = 0; i < count; i++) {
+            if (!(operands.get(i) instanceof COSNumber))
+                return false;
+        }
+        return true;
+    }
+
+    static Matrix matrix(List<COSBase> operands) {
+        float[] values = new float[6];
+        for (int i = 0; i < 6; i++)
+            values[i] = ((COSNumber) operands.get(i)).floatValue();
+        return new Matrix(values[0], values[1], values[2], values[3], values[4], values[5]);
+    }
+
+    /**
+     * The tracked values saved and restored by <code>q</code> and <code>Q</code>.
+     */
+    static class GraphicsState {
+        GraphicsState copy() {
+            GraphicsState copy = new GraphicsState();
+            copy.fontName = fontName;
+            copy.fontSize = fontSize;
+            copy.leading = leading;
+            copy.ctm = ctm;
+            return copy;
+        }
+
+        COSName fontName = null;
+        float fontSize = 0;
+        float leading = 0;
+        Matrix ctm = new Matrix();
+    }
+
+    final PDDocument document;
+    final Set<TrackedState> trackedState;
+    ContentStreamEncoding contentEncoding = ContentStreamEncoding.DEFAULT;
+
+    PDResources resources = null;
+    final Map<COSName, PDFont> fonts = new HashMap<>();
+    int depth = 0;
+    GraphicsState state = new GraphicsState();
+    final Deque<GraphicsState> savedStates = new ArrayDeque<>();
+    Matrix textLineMatrix = new Matrix();
+}
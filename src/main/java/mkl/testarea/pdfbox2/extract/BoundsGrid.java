@@ -0,0 +1,157 @@
+package mkl.testarea.pdfbox2.extract;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * A uniform grid spatial index of items with rectangular bounds. Queries
+ * for a rectangle return the items registered in the grid cells the rectangle
+ * touches, i.e. candidates which still need an exact test by the caller.
+ * </p>
+ * <p>
+ * Items spanning more than a few cells, e.g. large fills, are not registered
+ * in each cell but in a second level grid with {@link #COARSE_FACTOR} times
+ * the cell size, so queries only return the oversized items near the queried
+ * rectangle. Only items which also span too many cells of that coarse grid are
+ * kept in a list of oversized items which are candidates of every query; with
+ * cell sizes of a few points this only applies to items much larger than pages.
+ * </p>
+ *
+ * @author mkl
+ */
+class BoundsGrid<T> {
+    BoundsGrid(double cellSize) {
+        this(cellSize, true);
+    }
+
+    BoundsGrid(double cellSize, boolean useCoarseGrid) {
+        if (!(cellSize > 0))
+            throw new IllegalArgumentException(String.format("Cell size must be positive; value: %s.", cellSize));
+        this.cellSize = cellSize;
+        this.useCoarseGrid = useCoarseGrid;
+    }
+
+    void add(T item, double x, double y) {
+        add(item, x, y, x, y);
+    }
+
+    void add(T item, Rectangle2D bounds) {
+        add(item, bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY());
+    }
+
+    void add(T item, double minX, double minY, double maxX, double maxY) {
+        int minCellX = cell(minX), maxCellX = cell(maxX);
+        int minCellY = cell(minY), maxCellY = cell(maxY);
+        long cellCount = ((long) maxCellX - minCellX + 1) * ((long) maxCellY - minCellY + 1);
+        if (cellCount > MAX_CELLS_PER_ITEM) {
+            if (useCoarseGrid) {
+                if (coarse == null)
+                    coarse = new BoundsGrid<>(cellSize * COARSE_FACTOR, false);
+                coarse.add(item, minX, minY, maxX, maxY);
+            } else {
+                oversized.add(item);
+            }
+        } else {
+            if (cellCount > 1)
+                spanningItems = true;
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+                    cells.computeIfAbsent(key(cellX, cellY), k -> new ArrayList<>()).add(item);
+                }
+            }
+        }
+        size++;
+    }
+
+    /**
+     * @return the distinct items which may intersect the given rectangle.
+     */
+    List<T> query(Rectangle2D bounds) {
+        return query(bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY());
+    }
+
+    /**
+     * @return the distinct items which may intersect the given rectangle.
+     */
+    List<T> query(double minX, double minY, double maxX, double maxY) {
+        List<T> result = coarse != null ? coarse.query(minX, minY, maxX, maxY) : new ArrayList<>();
+        result.addAll(oversized);
+        if (cells.isEmpty())
+            return result;
+        Set<T> seen = spanningItems ? Collections.newSetFromMap(new IdentityHashMap<>()) : null;
+        int minCellX = cell(minX), maxCellX = cell(maxX);
+        int minCellY = cell(minY), maxCellY = cell(maxY);
+        long cellCount = ((long) maxCellX - minCellX + 1) * ((long) maxCellY - minCellY + 1);
+        if (cellCount > cells.size()) {
+            for (Map.Entry<Long, List<T>> entry : cells.entrySet()) {
+                int cellX = (int) (entry.getKey() >> 32);
+                int cellY = (int) (long) entry.getKey();
+                if (cellX >= minCellX && cellX <= maxCellX && cellY >= minCellY && cellY <= maxCellY)
+                    addAll(result, entry.getValue(), seen);
+            }
+        } else {
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+                    List<T> items = cells.get(key(cellX, cellY));
+                    if (items != null)
+                        addAll(result, items, seen);
+                }
+            }
+        }
+        return result;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        cells.clear();
+        oversized.clear();
+        coarse = null;
+        spanningItems = false;
+        size = 0;
+    }
+
+    static <T> void addAll(List<T> result, List<T> items, Set<T> seen) {
+        if (seen == null) {
+            result.addAll(items);
+        } else {
+            for (T item : items) {
+                if (seen.add(item))
+                    result.add(item);
+            }
+        }
+    }
+
+    int cell(double coordinate) {
+        double cell = Math.floor(coordinate / cellSize);
+        if (cell < Integer.MIN_VALUE / 2)
+            return Integer.MIN_VALUE / 2;
+        if (cell > Integer.MAX_VALUE / 2)
+            return Integer.MAX_VALUE / 2;
+        return (int) cell;
+    }
+
+    static long key(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xffffffffL);
+    }
+
+    final static int MAX_CELLS_PER_ITEM = 64;
+    final static int COARSE_FACTOR = 8;
+
+    final double cellSize;
+    final boolean useCoarseGrid;
+    final Map<Long, List<T>> cells = new HashMap<>();
+    final List<T> oversized = new ArrayList<>();
+    BoundsGrid<T> coarse = null;
+    boolean spanningItems = false;
+    int size = 0;
+}
@@ -1,11 +1,16 @@
 package mkl.testarea.pdfbox2.extract;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import org.apache.pdfbox.pdmodel.graphics.state.PDGraphicsState;
 import org.apache.pdfbox.pdmodel.graphics.state.RenderingMode;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.pdfbox.text.TextPosition;
@@ -21,7 +26,23 @@ import org.apache.pdfbox.text.TextPosition;
  * </a>
  * to PDFBox 2.
  * </p>
- * 
+ * <p>
+ * The rendering mode and colors of the glyphs are not kept in maps keyed by
+ * {@link TextPosition} (whose hash code is calculated from its content) for
+ * the whole document but in a page scoped columnar store: the glyphs of the
+ * current page get consecutive indexes (looked up by identity), and for each
+ * index the rendering mode ordinal and the indexes of the stroking and non
+ * stroking color in a palette of distinct colors are stored in primitive
+ * arrays. The store is released at the end of each page. The formatted
+ * palette colors are cached, so {@link #writeString(String, List)} writes
+ * to the output without building strings per character.
+ * </p>
+ * <p>
+ * If a {@link GlyphRecordConsumer} is set, the glyphs are reported to it as
+ * {@link GlyphRecord} instances with RGB colors instead of being written as
+ * formatted text.
+ * </p>
+ *
  * @author mkl
  */
 public class ColorTextStripper extends PDFTextStripper
@@ -45,58 +66,124 @@ public class ColorTextStripper extends PDFTextStripper
         addOperator(new org.apache.pdfbox.contentstream.operator.color.SetNonStrokingDeviceCMYKColor());
     }
 
+    /**
+     * Sets a consumer to report the glyphs to instead of writing them
+     * as formatted text to the output; <code>null</code> restores text output.
+     */
+    public void setGlyphConsumer(GlyphRecordConsumer glyphConsumer)
+    {
+        this.glyphConsumer = glyphConsumer;
+    }
+
+    @Override
+    public void processPage(PDPage page) throws IOException
+    {
+        releasePageStore();
+        super.processPage(page);
+    }
+
+    @Override
+    protected void writePage() throws IOException
+    {
+        try
+        {
+            super.writePage();
+        }
+        finally
+        {
+            releasePageStore();
+        }
+    }
+
     @Override
     protected void processTextPosition(TextPosition text)
     {
-        renderingMode.put(text, getGraphicsState().getTextState().getRenderingMode());
-        strokingColor.put(text, getGraphicsState().getStrokingColor().getComponents());
-        nonStrokingColor.put(text, getGraphicsState().getNonStrokingColor().getComponents());
+        PDGraphicsState graphicsState = getGraphicsState();
+        int index = glyphCount++;
+        if (index == renderingModes.length)
+        {
+            int capacity = Math.max(64, 2 * index);
+            renderingModes = Arrays.copyOf(renderingModes, capacity);
+            strokingColors = Arrays.copyOf(strokingColors, capacity);
+            nonStrokingColors = Arrays.copyOf(nonStrokingColors, capacity);
+        }
+        renderingModes[index] = (byte) graphicsState.getTextState().getRenderingMode().ordinal();
+
+        PDColor color = graphicsState.getStrokingColor();
+        if (color != lastStrokingColor)
+        {
+            lastStrokingColor = color;
+            lastStrokingColorIndex = palette.indexOf(color);
+        }
+        strokingColors[index] = lastStrokingColorIndex;
+
+        color = graphicsState.getNonStrokingColor();
+        if (color != lastNonStrokingColor)
+        {
+            lastNonStrokingColor = color;
+            lastNonStrokingColorIndex = palette.indexOf(color);
+        }
+        nonStrokingColors[index] = lastNonStrokingColorIndex;
+
+        glyphIndexes.put(text, index);
 
         super.processTextPosition(text);
     }
 
-    Map<TextPosition, RenderingMode> renderingMode = new HashMap<TextPosition, RenderingMode>();
-    Map<TextPosition, float[]> strokingColor = new HashMap<TextPosition, float[]>();
-    Map<TextPosition, float[]> nonStrokingColor = new HashMap<TextPosition, float[]>();
-
     final static List<RenderingMode> FILLING_MODES = Arrays.asList(RenderingMode.FILL, RenderingMode.FILL_STROKE, RenderingMode.FILL_CLIP, RenderingMode.FILL_STROKE_CLIP);
     final static List<RenderingMode> STROKING_MODES = Arrays.asList(RenderingMode.STROKE, RenderingMode.FILL_STROKE, RenderingMode.STROKE_CLIP, RenderingMode.FILL_STROKE_CLIP);
     final static List<RenderingMode> CLIPPING_MODES = Arrays.asList(RenderingMode.FILL_CLIP, RenderingMode.STROKE_CLIP, RenderingMode.FILL_STROKE_CLIP, RenderingMode.NEITHER_CLIP);
+    final static RenderingMode[] RENDERING_MODES = RenderingMode.values();
 
     @Override
     protected void writeString(String text, List<TextPosition> textPositions) throws IOException
     {
-        for (TextPosition textPosition: textPositions)
+        if (glyphConsumer != null)
         {
-            RenderingMode charRenderingMode = renderingMode.get(textPosition);
-            float[] charStrokingColor = strokingColor.get(textPosition);
-            float[] charNonStrokingColor = nonStrokingColor.get(textPosition);
-
-            StringBuilder textBuilder = new StringBuilder();
-            textBuilder.append(textPosition.getUnicode())
-                       .append("{");
-
-            if (FILLING_MODES.contains(charRenderingMode))
+            for (TextPosition textPosition: textPositions)
             {
-                textBuilder.append("FILL:")
-                           .append(toString(charNonStrokingColor))
-                           .append(';');
-            }
-            
-            if (STROKING_MODES.contains(charRenderingMode))
-            {
-                textBuilder.append("STROKE:")
-                           .append(toString(charStrokingColor))
-                           .append(';');
+                int index = glyphIndexes.get(textPosition);
+                if (index >= 0)
+                    record.set(getCurrentPageNo(), textPosition, RENDERING_MODES[renderingModes[index]],
+                            palette.getRgb(nonStrokingColors[index]), palette.getRgb(strokingColors[index]), GlyphRecord.NO_COLOR);
+                else
+                    record.set(getCurrentPageNo(), textPosition, null, GlyphRecord.NO_COLOR, GlyphRecord.NO_COLOR, GlyphRecord.NO_COLOR);
+                glyphConsumer.accept(record);
             }
+            return;
+        }
 
-            if (CLIPPING_MODES.contains(charRenderingMode))
+        for (TextPosition textPosition: textPositions)
+        {
+            output.write(String.valueOf(textPosition.getUnicode()));
+            output.write('{');
+
+            int index = glyphIndexes.get(textPosition);
+            if (index >= 0)
             {
-                textBuilder.append("CLIP;");
+                RenderingMode charRenderingMode = RENDERING_MODES[renderingModes[index]];
+
+                if (FILLING_MODES.contains(charRenderingMode))
+                {
+                    output.write("FILL:");
+                    output.write(palette.getText(nonStrokingColors[index]));
+                    output.write(';');
+                }
+
+                if (STROKING_MODES.contains(charRenderingMode))
+                {
+                    output.write("STROKE:");
+                    output.write(palette.getText(strokingColors[index]));
+                    output.write(';');
+                }
+
+                if (CLIPPING_MODES.contains(charRenderingMode))
+                {
+                    output.write("CLIP;");
+                }
             }
 
-            textBuilder.append("}");
-            writeString(textBuilder.toString());
+            output.write('}');
         }
     }
 
@@ -124,5 +211,202 @@ public class ColorTextStripper extends PDFTextStripper
 
         return builder.toString();
     }
-    
+
+    void releasePageStore()
+    {
+        glyphIndexes.clear();
+        palette.clear();
+        lastStrokingColor = null;
+        lastNonStrokingColor = null;
+        if (renderingModes.length > 4096)
+        {
+            renderingModes = new byte[0];
+            strokingColors = new int[0];
+            nonStrokingColors = new int[0];
+        }
+        glyphCount = 0;
+    }
+
+    /**
+     * The distinct colors of the current page with their formatted text and RGB value.
+     */
+    class Palette
+    {
+        int indexOf(PDColor color)
+        {
+            ColorKey key = new ColorKey(color);
+            Integer index = indexes.get(key);
+            if (index == null)
+            {
+                index = colors.size();
+                colors.add(color);
+                texts.add(null);
+                rgbs.add(null);
+                indexes.put(key, index);
+            }
+            return index;
+        }
+
+        String getText(int index)
+        {
+            String text = texts.get(index);
+            if (text == null)
+            {
+                text = ColorTextStripper.this.toString(colors.get(index).getComponents());
+                texts.set(index, text);
+            }
+            return text;
+        }
+
+        int getRgb(int index)
+        {
+            Integer rgb = rgbs.get(index);
+            if (rgb == null)
+            {
+                rgb = GlyphRecord.toRgb(colors.get(index));
+                rgbs.set(index, rgb);
+            }
+            return rgb;
+        }
+
+        void clear()
+        {
+            colors.clear();
+            texts.clear();
+            rgbs.clear();
+            indexes.clear();
+        }
+
+        final List<PDColor> colors = new ArrayList<>();
+        final List<String> texts = new ArrayList<>();
+        final List<Integer> rgbs = new ArrayList<>();
+        final Map<ColorKey, Integer> indexes = new HashMap<>();
+    }
+
+    /**
+     * Key of equal colors, i.e. equal components in the same color space.
+     */
+    static class ColorKey
+    {
+        ColorKey(PDColor color)
+        {
+            this.colorSpace = color.getColorSpace();
+            this.components = color.getComponents();
+            this.hash = 31 * System.identityHashCode(colorSpace) + Arrays.hashCode(components);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof ColorKey))
+                return false;
+            ColorKey other = (ColorKey) obj;
+            return colorSpace == other.colorSpace && Arrays.equals(components, other.components);
+        }
+
+        final PDColorSpace colorSpace;
+        final float[] components;
+        final int hash;
+    }
+
+    /**
+     * A minimal open addressing map from objects, compared by identity, to
+     * non-negative ints; {@link #get(Object)} returns -1 for unknown keys.
+     */
+    static class IdentityIndex
+    {
+        void put(Object key, int value)
+        {
+            if (2 * (size + 1) > keys.length)
+                resize(2 * keys.length);
+            int mask = keys.length - 1;
+            int slot = slot(key, mask);
+            while (keys[slot] != null)
+            {
+                if (keys[slot] == key)
+                {
+                    values[slot] = value;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+        }
+
+        int get(Object key)
+        {
+            int mask = keys.length - 1;
+            int slot = slot(key, mask);
+            while (keys[slot] != null)
+            {
+                if (keys[slot] == key)
+                    return values[slot];
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        void clear()
+        {
+            if (keys.length > 8192)
+            {
+                keys = new Object[INITIAL_CAPACITY];
+                values = new int[INITIAL_CAPACITY];
+            }
+            else if (size > 0)
+            {
+                Arrays.fill(keys, null);
+            }
+            size = 0;
+        }
+
+        void resize(int capacity)
+        {
+            Object[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new Object[capacity];
+            values = new int[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++)
+            {
+                if (oldKeys[i] != null)
+                    put(oldKeys[i], oldValues[i]);
+            }
+        }
+
+        static int slot(Object key, int mask)
+        {
+            int hash = System.identityHashCode(key);
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+
+        final static int INITIAL_CAPACITY = 256;
+
+        Object[] keys = new Object[INITIAL_CAPACITY];
+        int[] values = new int[INITIAL_CAPACITY];
+        int size = 0;
+    }
+
+    GlyphRecordConsumer glyphConsumer = null;
+    final GlyphRecord record = new GlyphRecord();
+
+    final IdentityIndex glyphIndexes = new IdentityIndex();
+    final Palette palette = new Palette();
+    int glyphCount = 0;
+    byte[] renderingModes = new byte[0];
+    int[] strokingColors = new int[0];
+    int[] nonStrokingColors = new int[0];
+
+    PDColor lastStrokingColor = null;
+    int lastStrokingColorIndex = -1;
+    PDColor lastNonStrokingColor = null;
+    int lastNonStrokingColorIndex = -1;
 }
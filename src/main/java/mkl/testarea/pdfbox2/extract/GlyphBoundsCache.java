@@ -0,0 +1,208 @@
+package mkl.testarea.pdfbox2.extract;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.fontbox.util.BoundingBox;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDCIDFontType2;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDSimpleFont;
+import org.apache.pdfbox.pdmodel.font.PDTrueTypeFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.font.PDType3CharProc;
+import org.apache.pdfbox.pdmodel.font.PDType3Font;
+import org.apache.pdfbox.pdmodel.font.PDVectorFont;
+import org.apache.pdfbox.util.Matrix;
+
+/**
+ * <p>
+ * This class calculates glyph bounds like
+ * <code>org.apache.pdfbox.examples.util.DrawPrintTextLocations.calculateGlyphBounds(Matrix, PDFont, int)</code>
+ * but caches the untransformed bounding box of each glyph outline. Thus, the glyph
+ * outline of a font and code is retrieved only once, and for each further use of the
+ * glyph merely the text rendering matrix is applied to the four corners of the cached box.
+ * </p>
+ * <p>
+ * Fonts are identified by their {@link COSDictionary}. The least recently used fonts
+ * are evicted once the configured maximum number of fonts is exceeded. An instance
+ * may be used by multiple threads.
+ * </p>
+ * <p>
+ * As font dictionaries are specific to their document, an instance is useful for the
+ * pages of a single document only. Thus, create one instance per document and hand
+ * it to the analyzers of its pages, e.g. the {@link BoundingBoxFinder} or the
+ * <code>PageVerticalAnalyzer</code>, and drop it together with the document. Otherwise
+ * the cache keeps the font dictionaries and font programs of closed documents alive.
+ * </p>
+ *
+ * @author mkl
+ */
+public class GlyphBoundsCache {
+    public GlyphBoundsCache() {
+        this(DEFAULT_MAX_FONTS);
+    }
+
+    public GlyphBoundsCache(int maxFonts) {
+        if (maxFonts < 1)
+            throw new IllegalArgumentException(String.format("Maximum number of fonts must be positive; value: %s.", maxFonts));
+        this.maxFonts = maxFonts;
+    }
+
+    /**
+     * @return the bounds of the glyph with the given code in the given font
+     * drawn with the given text rendering matrix or <code>null</code> if the
+     * glyph outline cannot be determined.
+     */
+    public Rectangle2D getBounds(Matrix textRenderingMatrix, PDFont font, int code) throws IOException {
+        FontEntry fontEntry = getFontEntry(font);
+        Rectangle2D box = fontEntry.glyphBoxes.get(code);
+        if (box == null) {
+            box = calculateGlyphBox(font, code);
+            fontEntry.glyphBoxes.put(code, box);
+        }
+        if (box == NO_GLYPH) {
+            return null;
+        }
+
+        AffineTransform at = textRenderingMatrix.createAffineTransform();
+        at.concatenate(fontEntry.fontTransform);
+        double m00 = at.getScaleX(), m01 = at.getShearX(), m02 = at.getTranslateX();
+        double m10 = at.getShearY(), m11 = at.getScaleY(), m12 = at.getTranslateY();
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < 4; i++) {
+            double x = (i & 1) == 0 ? box.getMinX() : box.getMaxX();
+            double y = (i & 2) == 0 ? box.getMinY() : box.getMaxY();
+            double tx = m00 * x + m01 * y + m02;
+            double ty = m10 * x + m11 * y + m12;
+            if (tx < minX) minX = tx;
+            if (tx > maxX) maxX = tx;
+            if (ty < minY) minY = ty;
+            if (ty > maxY) maxY = ty;
+        }
+        return new Rectangle2D.Double(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    FontEntry getFontEntry(PDFont font) throws IOException {
+        COSDictionary key = font.getCOSObject();
+        synchronized (fonts) {
+            FontEntry fontEntry = fonts.get(key);
+            if (fontEntry != null)
+                return fontEntry;
+        }
+        FontEntry fontEntry = new FontEntry(calculateFontTransform(font));
+        synchronized (fonts) {
+            FontEntry existing = fonts.putIfAbsent(key, fontEntry);
+            return existing != null ? existing : fontEntry;
+        }
+    }
+
+    /**
+     * The transformation from glyph outline space to text space, i.e. the
+     * font matrix, for TrueType based fonts scaled by the units per em.
+     */
+    static AffineTransform calculateFontTransform(PDFont font) throws IOException {
+        AffineTransform at = font.getFontMatrix().createAffineTransform();
+        if (font instanceof PDTrueTypeFont)
+        {
+            PDTrueTypeFont ttFont = (PDTrueTypeFont) font;
+            int unitsPerEm = ttFont.getTrueTypeFont().getHeader().getUnitsPerEm();
+            at.scale(1000d / unitsPerEm, 1000d / unitsPerEm);
+        }
+        if (font instanceof PDType0Font)
+        {
+            PDType0Font t0font = (PDType0Font) font;
+            if (t0font.getDescendantFont() instanceof PDCIDFontType2)
+            {
+                int unitsPerEm = ((PDCIDFontType2) t0font.getDescendantFont()).getTrueTypeFont().getHeader().getUnitsPerEm();
+                at.scale(1000d / unitsPerEm, 1000d / unitsPerEm);
+            }
+        }
+        return at;
+    }
+
+    /**
+     * The untransformed bounding box of the glyph outline or {@link #NO_GLYPH}.
+     * The font class distinction follows
+     * <code>org.apache.pdfbox.examples.util.DrawPrintTextLocations.calculateGlyphBounds(Matrix, PDFont, int)</code>.
+     */
+    static Rectangle2D calculateGlyphBox(PDFont font, int code) throws IOException {
+        GeneralPath path = null;
+        if (font instanceof PDType3Font)
+        {
+            // It is difficult to calculate the real individual glyph bounds for type 3 fonts
+            // because these are not vector fonts, the content stream could contain almost anything
+            // that is found in page content streams.
+            PDType3Font t3Font = (PDType3Font) font;
+            PDType3CharProc charProc = t3Font.getCharProc(code);
+            if (charProc != null)
+            {
+                BoundingBox fontBBox = t3Font.getBoundingBox();
+                PDRectangle glyphBBox = charProc.getGlyphBBox();
+                if (glyphBBox != null)
+                {
+                    // PDFBOX-3850: glyph bbox could be larger than the font bbox
+                    glyphBBox.setLowerLeftX(Math.max(fontBBox.getLowerLeftX(), glyphBBox.getLowerLeftX()));
+                    glyphBBox.setLowerLeftY(Math.max(fontBBox.getLowerLeftY(), glyphBBox.getLowerLeftY()));
+                    glyphBBox.setUpperRightX(Math.min(fontBBox.getUpperRightX(), glyphBBox.getUpperRightX()));
+                    glyphBBox.setUpperRightY(Math.min(fontBBox.getUpperRightY(), glyphBBox.getUpperRightY()));
+                    path = glyphBBox.toGeneralPath();
+                }
+            }
+        }
+        else if (font instanceof PDVectorFont)
+        {
+            PDVectorFont vectorFont = (PDVectorFont) font;
+            path = vectorFont.getPath(code);
+        }
+        else if (font instanceof PDSimpleFont)
+        {
+            PDSimpleFont simpleFont = (PDSimpleFont) font;
+
+            // these two lines do not always work, e.g. for the TT fonts in file 032431.pdf
+            // which is why PDVectorFont is tried first.
+            String name = simpleFont.getEncoding().getName(code);
+            path = simpleFont.getPath(name);
+        }
+        else
+        {
+            // shouldn't happen, please open issue in JIRA
+            System.out.println("Unknown font class: " + font.getClass());
+        }
+        if (path == null)
+        {
+            return NO_GLYPH;
+        }
+        return path.getBounds2D();
+    }
+
+    static class FontEntry {
+        FontEntry(AffineTransform fontTransform) {
+            this.fontTransform = fontTransform;
+        }
+
+        final AffineTransform fontTransform;
+        final Map<Integer, Rectangle2D> glyphBoxes = new ConcurrentHashMap<>();
+    }
+
+    final int maxFonts;
+    final Map<COSDictionary, FontEntry> fonts = new LinkedHashMap<COSDictionary, FontEntry>(16, .75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<COSDictionary, FontEntry> eldest) {
+            return size() > maxFonts;
+        }
+    };
+
+    final static Rectangle2D NO_GLYPH = new Rectangle2D.Double();
+    final static int DEFAULT_MAX_FONTS = 256;
+}
@@ -0,0 +1,123 @@
+package mkl.testarea.pdfbox2.extract;
+
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.apache.pdfbox.pdmodel.graphics.state.RenderingMode;
+import org.apache.pdfbox.text.TextPosition;
+
+/**
+ * <p>
+ * A glyph with its colors as reported to a {@link GlyphRecordConsumer} by the
+ * {@link ColorTextStripper} and the {@link PdfToTextInfoConverter} instead of
+ * formatted strings. The bounding box is given in text direction adjusted
+ * coordinates with the y axis pointing downwards, like
+ * {@link TextPosition#getXDirAdj()} and {@link TextPosition#getYDirAdj()}.
+ * Colors are RGB ints as returned by {@link PDColor#toRGB()} or {@link #NO_COLOR}.
+ * </p>
+ * <p>
+ * Producers reuse a single instance for all glyphs, so a record is only valid
+ * during the {@link GlyphRecordConsumer#accept(GlyphRecord)} call; use
+ * {@link #copy()} to keep it.
+ * </p>
+ *
+ * @author mkl
+ */
+public class GlyphRecord {
+    /**
+     * The color value for unknown or not determinable colors.
+     */
+    public final static int NO_COLOR = -1;
+
+    public GlyphRecord copy() {
+        GlyphRecord copy = new GlyphRecord();
+        copy.set(pageNumber, textPosition, renderingMode, fillRgb, strokeRgb, backgroundRgb);
+        return copy;
+    }
+
+    void set(int pageNumber, TextPosition textPosition, RenderingMode renderingMode, int fillRgb, int strokeRgb, int backgroundRgb) {
+        this.pageNumber = pageNumber;
+        this.textPosition = textPosition;
+        this.renderingMode = renderingMode;
+        this.fillRgb = fillRgb;
+        this.strokeRgb = strokeRgb;
+        this.backgroundRgb = backgroundRgb;
+    }
+
+    /**
+     * @return the one based page number.
+     */
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    public TextPosition getTextPosition() {
+        return textPosition;
+    }
+
+    public String getUnicode() {
+        return textPosition.getUnicode();
+    }
+
+    public float getX() {
+        return textPosition.getXDirAdj();
+    }
+
+    /**
+     * @return the top of the glyph box.
+     */
+    public float getY() {
+        return textPosition.getYDirAdj() - textPosition.getHeightDir();
+    }
+
+    public float getWidth() {
+        return textPosition.getWidthDirAdj();
+    }
+
+    public float getHeight() {
+        return textPosition.getHeightDir();
+    }
+
+    /**
+     * @return the text rendering mode or <code>null</code> if unknown.
+     */
+    public RenderingMode getRenderingMode() {
+        return renderingMode;
+    }
+
+    public int getFillRgb() {
+        return fillRgb;
+    }
+
+    public int getStrokeRgb() {
+        return strokeRgb;
+    }
+
+    /**
+     * @return the color of the last fill below the glyph center or {@link #NO_COLOR}
+     * if there is none or it is not determined by the producer.
+     */
+    public int getBackgroundRgb() {
+        return backgroundRgb;
+    }
+
+    /**
+     * @return the RGB value of the given color or {@link #NO_COLOR} if it cannot be determined.
+     */
+    static int toRgb(PDColor color) {
+        if (color == null)
+            return NO_COLOR;
+        try {
+            return color.toRGB();
+        } catch (IOException | RuntimeException e) {
+            return NO_COLOR;
+        }
+    }
+
+    int pageNumber;
+    TextPosition textPosition;
+    RenderingMode renderingMode;
+    int fillRgb = NO_COLOR;
+    int strokeRgb = NO_COLOR;
+    int backgroundRgb = NO_COLOR;
+}
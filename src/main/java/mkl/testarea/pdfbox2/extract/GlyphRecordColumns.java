@@ -0,0 +1,129 @@
+package mkl.testarea.pdfbox2.extract;
+
+import java.io.IOException;
+
+/**
+ * <p>
+ * A {@link GlyphRecordConsumer} collecting the records in primitive columns for
+ * bulk export. Whenever the batch size is reached, the batch is handed to the
+ * {@link BatchListener} and the columns are reset; call {@link #flush()} after
+ * the extraction to hand over the remaining records.
+ * </p>
+ * <p>
+ * The column arrays are reused for the next batch, so a listener must process
+ * or copy them before returning. The rendering mode column holds the ordinal
+ * of the {@link org.apache.pdfbox.pdmodel.graphics.state.RenderingMode} or -1.
+ * </p>
+ *
+ * @author mkl
+ */
+public class GlyphRecordColumns implements GlyphRecordConsumer {
+    public interface BatchListener {
+        void accept(GlyphRecordColumns batch) throws IOException;
+    }
+
+    public GlyphRecordColumns(int batchSize, BatchListener listener) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException(String.format("Batch size must be positive; value: %s.", batchSize));
+        this.listener = listener;
+        pageNumbers = new int[batchSize];
+        unicodes = new String[batchSize];
+        xs = new float[batchSize];
+        ys = new float[batchSize];
+        widths = new float[batchSize];
+        heights = new float[batchSize];
+        renderingModes = new byte[batchSize];
+        fillRgbs = new int[batchSize];
+        strokeRgbs = new int[batchSize];
+        backgroundRgbs = new int[batchSize];
+    }
+
+    @Override
+    public void accept(GlyphRecord record) throws IOException {
+        pageNumbers[size] = record.getPageNumber();
+        unicodes[size] = record.getUnicode();
+        xs[size] = record.getX();
+        ys[size] = record.getY();
+        widths[size] = record.getWidth();
+        heights[size] = record.getHeight();
+        renderingModes[size] = (byte) (record.getRenderingMode() != null ? record.getRenderingMode().ordinal() : -1);
+        fillRgbs[size] = record.getFillRgb();
+        strokeRgbs[size] = record.getStrokeRgb();
+        backgroundRgbs[size] = record.getBackgroundRgb();
+        if (++size == pageNumbers.length)
+            flush();
+    }
+
+    /**
+     * Hands the collected records to the listener, if any.
+     */
+    public void flush() throws IOException {
+        if (size > 0) {
+            listener.accept(this);
+            for (int i = 0; i < size; i++)
+                unicodes[i] = null;
+            size = 0;
+        }
+    }
+
+    /**
+     * @return the number of records in the current batch; the column arrays
+     * may be longer.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int[] getPageNumbers() {
+        return pageNumbers;
+    }
+
+    public String[] getUnicodes() {
+        return unicodes;
+    }
+
+    public float[] getXs() {
+        return xs;
+    }
+
+    public float[] getYs() {
+        return ys;
+    }
+
+    public float[] getWidths() {
+        return widths;
+    }
+
+    public float[] getHeights() {
+        return heights;
+    }
+
+    public byte[] getRenderingModes() {
+        return renderingModes;
+    }
+
+    public int[] getFillRgbs() {
+        return fillRgbs;
+    }
+
+    public int[] getStrokeRgbs() {
+        return strokeRgbs;
+    }
+
+    public int[] getBackgroundRgbs() {
+        return backgroundRgbs;
+    }
+
+    final BatchListener listener;
+    final int[] pageNumbers;
+    final String[] unicodes;
+    final float[] xs;
+    final float[] ys;
+    final float[] widths;
+    final float[] heights;
+    final byte[] renderingModes;
+    final int[] fillRgbs;
+    final int[] strokeRgbs;
+    final int[] backgroundRgbs;
+    int size = 0;
+}
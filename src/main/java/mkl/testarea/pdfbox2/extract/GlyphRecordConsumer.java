@@ -0,0 +1,14 @@
+package mkl.testarea.pdfbox2.extract;
+
+import java.io.IOException;
+
+/**
+ * Receives the glyphs of the {@link ColorTextStripper} and the
+ * {@link PdfToTextInfoConverter} as {@link GlyphRecord} instances.
+ * The record instance is reused by the producer after the call.
+ *
+ * @author mkl
+ */
+public interface GlyphRecordConsumer {
+    void accept(GlyphRecord record) throws IOException;
+}
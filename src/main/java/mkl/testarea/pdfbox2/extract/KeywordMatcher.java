@@ -0,0 +1,160 @@
+package mkl.testarea.pdfbox2.extract;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import mkl.testarea.pdfbox2.extract.SearchableTextSequence.Match;
+
+/**
+ * <a href="http://stackoverflow.com/questions/35937774/how-to-search-some-specific-string-or-a-word-and-there-coordinates-from-a-pdf-do">
+ * How to search some specific string or a word and there coordinates from a pdf document in java
+ * </a>
+ * <p>
+ * This class finds all occurrences of many keywords in a {@link SearchableTextSequence}
+ * in a single pass using an Aho-Corasick automaton. The automaton is built once in the
+ * constructor and can be applied to any number of sequences, e.g. to each page of a
+ * document. Overlapping occurrences of different keywords are all reported, ordered
+ * by their end index.
+ * </p>
+ *
+ * @author mkl
+ */
+public class KeywordMatcher
+{
+    public KeywordMatcher(Collection<String> keywords, boolean ignoreCase)
+    {
+        this.ignoreCase = ignoreCase;
+
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> keywordIndexes = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        keywordIndexes.add(-1);
+        this.keywords = new ArrayList<>();
+        for (String keyword : keywords)
+        {
+            if (keyword == null || keyword.isEmpty())
+                throw new IllegalArgumentException(String.format("Keywords must not be empty; keyword index: %s.", this.keywords.size()));
+            int node = 0;
+            for (int i = 0; i < keyword.length(); i++)
+            {
+                Map<Character, Integer> children = trie.get(node);
+                char c = normalize(keyword.charAt(i));
+                Integer child = children.get(c);
+                if (child == null)
+                {
+                    child = trie.size();
+                    children.put(c, child);
+                    trie.add(new TreeMap<>());
+                    keywordIndexes.add(-1);
+                }
+                node = child;
+            }
+            if (keywordIndexes.get(node) < 0)
+                keywordIndexes.set(node, this.keywords.size());
+            this.keywords.add(keyword);
+        }
+
+        int size = trie.size();
+        childChars = new char[size][];
+        childNodes = new int[size][];
+        keywordIndex = new int[size];
+        depth = new int[size];
+        failure = new int[size];
+        outputLink = new int[size];
+        for (int node = 0; node < size; node++)
+        {
+            Map<Character, Integer> children = trie.get(node);
+            childChars[node] = new char[children.size()];
+            childNodes[node] = new int[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> entry : children.entrySet())
+            {
+                childChars[node][i] = entry.getKey();
+                childNodes[node][i] = entry.getValue();
+                i++;
+            }
+            keywordIndex[node] = keywordIndexes.get(node);
+        }
+
+        // breadth first determination of failure and output links
+        outputLink[0] = -1;
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(0);
+        while (!queue.isEmpty())
+        {
+            int node = queue.poll();
+            for (int i = 0; i < childChars[node].length; i++)
+            {
+                char c = childChars[node][i];
+                int child = childNodes[node][i];
+                depth[child] = depth[node] + 1;
+                int fallback = 0;
+                if (node != 0)
+                {
+                    int state = failure[node];
+                    while (state != 0 && child(state, c) < 0)
+                        state = failure[state];
+                    int next = child(state, c);
+                    fallback = next >= 0 ? next : 0;
+                }
+                failure[child] = fallback;
+                outputLink[child] = keywordIndex[fallback] >= 0 ? fallback : outputLink[fallback];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * @return all occurrences of the keywords in the given sequence.
+     */
+    public List<Match> findAll(SearchableTextSequence sequence)
+    {
+        List<Match> matches = new ArrayList<>();
+        char[] chars = sequence.chars;
+        int state = 0;
+        for (int i = 0; i < chars.length; i++)
+        {
+            char c = normalize(chars[i]);
+            int next;
+            while ((next = child(state, c)) < 0 && state != 0)
+                state = failure[state];
+            state = next >= 0 ? next : 0;
+            for (int node = keywordIndex[state] >= 0 ? state : outputLink[state]; node > 0; node = outputLink[node])
+            {
+                matches.add(new Match(sequence, i + 1 - depth[node], i + 1, keywords.get(keywordIndex[node])));
+            }
+        }
+        return matches;
+    }
+
+    public List<String> getKeywords()
+    {
+        return keywords;
+    }
+
+    int child(int node, char c)
+    {
+        int i = Arrays.binarySearch(childChars[node], c);
+        return i >= 0 ? childNodes[node][i] : -1;
+    }
+
+    char normalize(char c)
+    {
+        return ignoreCase ? Character.toLowerCase(Character.toUpperCase(c)) : c;
+    }
+
+    final boolean ignoreCase;
+    final List<String> keywords;
+    final char[][] childChars;
+    final int[][] childNodes;
+    final int[] keywordIndex;
+    final int[] depth;
+    final int[] failure;
+    final int[] outputLink;
+}
@@ -0,0 +1,28 @@
+package mkl.testarea.pdfbox2.extract;
+
+import java.io.Writer;
+
+/**
+ * A {@link Writer} dropping everything, for text stripper runs in which the
+ * extracted text itself is not needed, e.g. {@link TextHitIndex#build(org.apache.pdfbox.pdmodel.PDDocument)}
+ * and {@link PDFTextSectionStripper#process(org.apache.pdfbox.pdmodel.PDDocument)}.
+ *
+ * @author mkl
+ */
+class NullWriter extends Writer
+{
+    @Override
+    public void write(char[] cbuf, int off, int len)
+    {
+    }
+
+    @Override
+    public void flush()
+    {
+    }
+
+    @Override
+    public void close()
+    {
+    }
+}
@@ -2,8 +2,12 @@ package mkl.testarea.pdfbox2.extract;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
@@ -22,6 +26,13 @@ import org.apache.pdfbox.text.TextPosition;
  * of semantic text sections which are recognizable by their characteristics of each line
  * alone, e.g. the sample document supplied by the OP.
  * </p>
+ * <p>
+ * If a {@link SectionListener} is set, each section is handed to it as a
+ * {@link TextSectionSummary} as soon as the next section starts, and neither the
+ * sections nor the {@link TextPosition}s of their lines are retained. In that
+ * mode use {@link #process(PDDocument)} instead of {@link #getText(PDDocument)}
+ * which would still buffer the whole extracted text.
+ * </p>
  * 
  * @author mkl
  */
@@ -35,6 +46,16 @@ public class PDFTextSectionStripper extends PDFTextStripper
         super();
         
         this.sectionDefinitions = sectionDefinitions;
+        this.featureDefinitions = new BitSet(sectionDefinitions.size());
+        this.rawDefinitions = new BitSet(sectionDefinitions.size());
+        for (int i = 0; i < sectionDefinitions.size(); i++)
+        {
+            if (sectionDefinitions.get(i).featurePredicate != null)
+                featureDefinitions.set(i);
+            else
+                rawDefinitions.set(i);
+        }
+        this.rawResults = new byte[sectionDefinitions.size()];
     }
 
     //
@@ -48,9 +69,46 @@ public class PDFTextSectionStripper extends PDFTextStripper
         return Collections.unmodifiableList(sections);
     }
 
+    /**
+     * Receives the sections recognized by a {@link PDFTextSectionStripper} as soon as they are complete.
+     */
+    public interface SectionListener
+    {
+        void sectionCompleted(TextSectionSummary section) throws IOException;
+    }
+
+    /**
+     * Sets a listener to hand the sections to as {@link TextSectionSummary} instances
+     * instead of collecting them for {@link #getSections()}; <code>null</code> restores
+     * collecting.
+     */
+    public void setSectionListener(SectionListener sectionListener)
+    {
+        this.sectionListener = sectionListener;
+    }
+
+    /**
+     * Recognizes the sections of the given document like {@link #getText(PDDocument)}
+     * does but drops the extracted text itself instead of buffering it, e.g. for use
+     * with a {@link SectionListener}.
+     */
+    public void process(PDDocument document) throws IOException
+    {
+        writeText(document, new NullWriter());
+    }
+
     //
     // PDFTextStripper overrides
     //
+    /**
+     * <p>
+     * Each line is matched by one transition of a state machine whose state is the
+     * current section definition and whether a multi line section is open. The
+     * definitions matching a line are determined at most once per line: feature
+     * based definitions once per {@link TextLineFeatures} line class for the whole
+     * document, the others lazily once per line.
+     * </p>
+     */
     @Override
     protected void writeLineSeparator() throws IOException
     {
@@ -58,35 +116,26 @@ public class PDFTextSectionStripper extends PDFTextStripper
 
         if (!currentLine.isEmpty())
         {
+            startLine();
+
             boolean matched = false;
-            if (!(currentHeader.isEmpty() && currentBody.isEmpty()))
+            if (isSectionOpen())
             {
                 TextSectionDefinition definition = sectionDefinitions.get(currentSectionDefinition);
                 switch (definition.multiLine)
                 {
                 case multiLine:
-                    if (definition.matchPredicate.test(currentLine))
+                    if (matches(currentSectionDefinition))
                     {
-                        currentBody.add(new ArrayList<>(currentLine));
+                        addBodyLine();
                         matched = true;
                     }
                     break;
                 case multiLineHeader:
                 case multiLineIntro:
-                    boolean followUpMatch = false;
-                    for (int i = definition.multiple ? currentSectionDefinition : currentSectionDefinition + 1;
-                            i < sectionDefinitions.size(); i++)
-                    {
-                        TextSectionDefinition followUpDefinition = sectionDefinitions.get(i);
-                        if (followUpDefinition.matchPredicate.test(currentLine))
-                        {
-                            followUpMatch = true;
-                            break;
-                        }
-                    }
-                    if (!followUpMatch)
+                    if (firstMatch(definition.multiple ? currentSectionDefinition : currentSectionDefinition + 1) < 0)
                     {
-                        currentBody.add(new ArrayList<>(currentLine));
+                        addBodyLine();
                         matched = true;
                     }
                     break;
@@ -96,9 +145,7 @@ public class PDFTextSectionStripper extends PDFTextStripper
 
                 if (!matched)
                 {
-                    sections.add(new TextSection(definition, currentHeader, currentBody));
-                    currentHeader.clear();
-                    currentBody.clear();
+                    closeSection(definition);
                     if (!definition.multiple)
                         currentSectionDefinition++;
                 }
@@ -106,31 +153,33 @@ public class PDFTextSectionStripper extends PDFTextStripper
 
             if (!matched)
             {
-                while (currentSectionDefinition < sectionDefinitions.size())
+                int match = firstMatch(currentSectionDefinition);
+                if (match >= 0)
                 {
+                    matched = true;
+                    currentSectionDefinition = match;
                     TextSectionDefinition definition = sectionDefinitions.get(currentSectionDefinition);
-                    if (definition.matchPredicate.test(currentLine))
+                    switch (definition.multiLine)
                     {
-                        matched = true;
-                        switch (definition.multiLine)
-                        {
-                        case singleLine:
-                            sections.add(new TextSection(definition, currentLine, Collections.emptyList()));
-                            if (!definition.multiple)
-                                currentSectionDefinition++;
-                            break;
-                        case multiLineHeader:
-                            currentHeader.addAll(new ArrayList<>(currentLine));
-                            break;
-                        case multiLine:
-                        case multiLineIntro:
-                            currentBody.add(new ArrayList<>(currentLine));
-                            break;
-                        }
+                    case singleLine:
+                        addSingleLineSection(definition);
+                        if (!definition.multiple)
+                            currentSectionDefinition++;
+                        break;
+                    case multiLineHeader:
+                        openSection(definition);
+                        addHeaderLine();
+                        break;
+                    case multiLine:
+                    case multiLineIntro:
+                        openSection(definition);
+                        addBodyLine();
                         break;
                     }
-
-                    currentSectionDefinition++;
+                }
+                else
+                {
+                    currentSectionDefinition = sectionDefinitions.size();
                 }
             }
 
@@ -142,20 +191,140 @@ public class PDFTextSectionStripper extends PDFTextStripper
         currentLine.clear();
     }
 
-    @Override
-    protected void endDocument(PDDocument document) throws IOException
+    /**
+     * Determines the line class matches of the current line and resets the
+     * lazily evaluated results of the other definitions.
+     */
+    void startLine()
     {
-        super.endDocument(document);
+        lineCandidates.clear();
+        lineCandidates.or(rawDefinitions);
+        if (!featureDefinitions.isEmpty())
+        {
+            TextLineFeatures features = TextLineFeatures.of(currentLine);
+            if (features != null)
+                lineCandidates.or(classMatches.computeIfAbsent(features, this::compile));
+        }
+        Arrays.fill(rawResults, (byte) 0);
+    }
 
-        if (!(currentHeader.isEmpty() && currentBody.isEmpty()))
+    /**
+     * @return the feature based definitions matching the given line class.
+     */
+    BitSet compile(TextLineFeatures features)
+    {
+        BitSet matches = new BitSet(sectionDefinitions.size());
+        for (int i = featureDefinitions.nextSetBit(0); i >= 0; i = featureDefinitions.nextSetBit(i + 1))
+        {
+            if (sectionDefinitions.get(i).featurePredicate.test(features))
+                matches.set(i);
+        }
+        return matches;
+    }
+
+    /**
+     * @return the index of the first definition from the given one on matching
+     * the current line or -1 if there is none.
+     */
+    int firstMatch(int from)
+    {
+        for (int i = lineCandidates.nextSetBit(from); i >= 0; i = lineCandidates.nextSetBit(i + 1))
+        {
+            if (matches(i))
+                return i;
+        }
+        return -1;
+    }
+
+    boolean matches(int index)
+    {
+        if (!lineCandidates.get(index))
+            return false;
+        if (featureDefinitions.get(index))
+            return true;
+        if (rawResults[index] == 0)
+            rawResults[index] = sectionDefinitions.get(index).matchPredicate.test(currentLine) ? (byte) 1 : (byte) 2;
+        return rawResults[index] == 1;
+    }
+
+    //
+    // Section building
+    //
+    boolean isSectionOpen()
+    {
+        return currentSummary != null || !(currentHeader.isEmpty() && currentBody.isEmpty());
+    }
+
+    void openSection(TextSectionDefinition definition)
+    {
+        if (sectionListener != null)
+            currentSummary = new TextSectionSummary(definition);
+    }
+
+    void addHeaderLine()
+    {
+        if (currentSummary != null)
+            currentSummary.header = new TextSectionSummary.Line(currentLine, getCurrentPageNo());
+        else
+            currentHeader.addAll(currentLine);
+    }
+
+    /**
+     * Adds the current line to the body of the open section; in collecting mode
+     * the current line is handed over and replaced by a new empty one.
+     */
+    void addBodyLine()
+    {
+        if (currentSummary != null)
+        {
+            currentSummary.body.add(new TextSectionSummary.Line(currentLine, getCurrentPageNo()));
+        }
+        else
+        {
+            currentBody.add(currentLine);
+            currentLine = new ArrayList<>();
+        }
+    }
+
+    void addSingleLineSection(TextSectionDefinition definition) throws IOException
+    {
+        if (sectionListener != null)
+        {
+            TextSectionSummary summary = new TextSectionSummary(definition);
+            summary.header = new TextSectionSummary.Line(currentLine, getCurrentPageNo());
+            sectionListener.sectionCompleted(summary);
+        }
+        else
+            sections.add(new TextSection(definition, currentLine, Collections.emptyList()));
+    }
+
+    void closeSection(TextSectionDefinition definition) throws IOException
+    {
+        if (currentSummary != null)
+        {
+            TextSectionSummary summary = currentSummary;
+            currentSummary = null;
+            sectionListener.sectionCompleted(summary);
+        }
+        else
         {
-            TextSectionDefinition definition = sectionDefinitions.get(currentSectionDefinition);
             sections.add(new TextSection(definition, currentHeader, currentBody));
             currentHeader.clear();
             currentBody.clear();
         }
     }
 
+    @Override
+    protected void endDocument(PDDocument document) throws IOException
+    {
+        super.endDocument(document);
+
+        if (isSectionOpen())
+        {
+            closeSection(sectionDefinitions.get(currentSectionDefinition));
+        }
+    }
+
     @Override
     protected void writeString(String text, List<TextPosition> textPositions) throws IOException
     {
@@ -168,11 +337,19 @@ public class PDFTextSectionStripper extends PDFTextStripper
     // member variables
     //
     final List<TextSectionDefinition> sectionDefinitions;
+    final BitSet featureDefinitions;
+    final BitSet rawDefinitions;
+    final Map<TextLineFeatures, BitSet> classMatches = new HashMap<>();
+    final BitSet lineCandidates = new BitSet();
+    final byte[] rawResults;
 
     int currentSectionDefinition = 0;
     final List<TextSection> sections = new ArrayList<>();
-    final List<List<TextPosition>> currentLine = new ArrayList<>();
+    List<List<TextPosition>> currentLine = new ArrayList<>();
 
     final List<List<TextPosition>> currentHeader = new ArrayList<>();
     final List<List<List<TextPosition>>> currentBody = new ArrayList<>();
+
+    SectionListener sectionListener = null;
+    TextSectionSummary currentSummary = null;
 }
@@ -2,11 +2,16 @@ package mkl.testarea.pdfbox2.extract;
 
 import java.awt.geom.Area;
 import java.awt.geom.GeneralPath;
+import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.pdfbox.contentstream.operator.MissingOperandException;
 import org.apache.pdfbox.contentstream.operator.Operator;
@@ -39,6 +44,21 @@ import org.apache.pdfbox.util.Vector;
  * instructions but the {@link PageDrawer} does. So we borrow code from there
  * to implement path related behavior here.
  * </p>
+ * <p>
+ * The glyph origins collected for the current page are kept in a {@link BoundsGrid},
+ * so a fill only checks the glyphs in the grid cells touched by its bounding box
+ * instead of all glyphs of the page, and only these candidates are tested exactly
+ * against the fill path. Furthermore, the bounding box and rectangularity of the
+ * current clip area are cached, so most glyphs outside a clip area or inside a
+ * rectangular one are decided without a path scan.
+ * </p>
+ * <p>
+ * In the deferred occlusion mode (see {@link #setDeferOcclusion(boolean)}) fills
+ * do not check the glyphs at all. Instead, the glyphs of a page are buffered with
+ * their drawing order and the fills are recorded with theirs in a {@link BoundsGrid};
+ * at the end of the page each glyph is checked in one sweep against the fills in
+ * its grid cell which were drawn after it.
+ * </p>
  * 
  * @author mkl
  */
@@ -86,6 +106,15 @@ public class PDFVisibleTextStripper extends PDFTextStripper {
         this.useFatGlyphOrigin = useFatGlyphOrigin;
     }
 
+    /**
+     * @param deferOcclusion flag whether to resolve the hiding of glyphs by later
+     *  fills at the end of each page instead of at each fill; this is faster for
+     *  pages with many more fills than glyphs, e.g. CAD drawings and charts.
+     */
+    public void setDeferOcclusion(boolean deferOcclusion) {
+        this.deferOcclusion = deferOcclusion;
+    }
+
     float lowerLeftX = 0;
     float lowerLeftY = 0;
 
@@ -96,9 +125,31 @@ public class PDFVisibleTextStripper extends PDFTextStripper {
         lowerLeftX = pageSize.getLowerLeftX();
         lowerLeftY = pageSize.getLowerLeftY();
 
+        textGrid.clear();
+        coveredText.clear();
+        pageText.clear();
+        fillGrid.clear();
+        clipArea = null;
+
         super.processPage(page);
     }
 
+    @Override
+    protected void writePage() throws IOException {
+        if (deferOcclusion)
+            resolveOcclusion();
+        if (!coveredText.isEmpty()) {
+            for (List<TextPosition> list : charactersByArticle) {
+                list.removeIf(coveredText::contains);
+            }
+        }
+        textGrid.clear();
+        coveredText.clear();
+        pageText.clear();
+        fillGrid.clear();
+        super.writePage();
+    }
+
     @Override
     protected void processTextPosition(TextPosition text) {
         Matrix textMatrix = text.getTextMatrix();
@@ -109,9 +160,17 @@ public class PDFVisibleTextStripper extends PDFTextStripper {
         Area area = gs.getCurrentClippingPath();
         if (area == null ||
                 (contains(area, lowerLeftX + start.getX(), lowerLeftY + start.getY()) &&
-                        ((!checkEndPointToo) || contains(area, lowerLeftX + end.getX(), lowerLeftY + end.getY()))))
+                        ((!checkEndPointToo) || contains(area, lowerLeftX + end.getX(), lowerLeftY + end.getY())))) {
             super.processTextPosition(text);
-        else if (dropStream != null)
+            TextEntry entry = new TextEntry(text, lowerLeftX + start.getX(), lowerLeftY + start.getY(), lowerLeftX + end.getX(), lowerLeftY + end.getY(), pageText.size());
+            if (deferOcclusion) {
+                pageText.add(entry);
+            } else {
+                textGrid.add(entry, entry.startX, entry.startY);
+                if (checkEndPointToo)
+                    textGrid.add(entry, entry.endX, entry.endY);
+            }
+        } else if (dropStream != null)
             dropStream.printf("Clipped '%s' at %s,%s\n", text.getUnicode(), lowerLeftX + start.getX(), lowerLeftY + start.getY());
     }
 
@@ -128,36 +187,150 @@ public class PDFVisibleTextStripper extends PDFTextStripper {
      * </p>
      */
     protected boolean contains(Area area, float x, float y) {
+        if (area != clipArea) {
+            clipArea = area;
+            clipBounds = area.getBounds2D();
+            clipRectangular = area.isRectangular();
+        }
         if (useFatGlyphOrigin) {
             double length = .0002;
             double up = 1.0001;
             double down = .9999;
-            return area.intersects(x < 0 ? x*up : x*down, y < 0 ? y*up : y*down, Math.abs(x*length), Math.abs(y*length));
-        } else
+            double fatX = x < 0 ? x*up : x*down;
+            double fatY = y < 0 ? y*up : y*down;
+            double fatWidth = Math.abs(x*length);
+            double fatHeight = Math.abs(y*length);
+            if (!clipBounds.intersects(fatX, fatY, fatWidth, fatHeight))
+                return false;
+            if (clipRectangular)
+                return true;
+            return area.intersects(fatX, fatY, fatWidth, fatHeight);
+        } else {
+            if (!clipBounds.contains(x, y))
+                return false;
+            if (clipRectangular)
+                return true;
             return area.contains(x, y);
+        }
     }
 
     private GeneralPath linePath = new GeneralPath();
 
+    /**
+     * Marks the glyphs collected so far whose origin (or also end point, if
+     * checked) is covered by the current path as hidden; they are removed
+     * from the collected text in {@link #writePage()}.
+     */
     void deleteCharsInPath() {
-        for (List<TextPosition> list : charactersByArticle) {
-            List<TextPosition> toRemove = new ArrayList<>();
-            for (TextPosition text : list) {
-                Matrix textMatrix = text.getTextMatrix();
-                Vector start = textMatrix.transform(new Vector(0, 0));
-                Vector end = new Vector(start.getX() + text.getWidth(), start.getY());
-                if (linePath.contains(lowerLeftX + start.getX(), lowerLeftY + start.getY()) ||
-                        (checkEndPointToo && linePath.contains(lowerLeftX + end.getX(), lowerLeftY + end.getY()))) {
-                    toRemove.add(text);
-                }
+        if (deferOcclusion) {
+            // a fill only hides glyphs drawn before it
+            if (!pageText.isEmpty()) {
+                GeneralPath path = (GeneralPath) linePath.clone();
+                FillEntry fill = new FillEntry(path, path.getBounds2D(), pageText.size());
+                fillGrid.add(fill, fill.bounds);
             }
-            if (toRemove.size() != 0) {
-                System.out.println(toRemove.size());
-                list.removeAll(toRemove);
+            return;
+        }
+        if (textGrid.size() == 0)
+            return;
+        Rectangle2D bounds = linePath.getBounds2D();
+        for (TextEntry entry : textGrid.query(bounds)) {
+            if (coveredText.contains(entry.text))
+                continue;
+            if (contains(linePath, bounds, entry.startX, entry.startY) ||
+                    (checkEndPointToo && contains(linePath, bounds, entry.endX, entry.endY))) {
+                cover(entry);
             }
         }
     }
 
+    /**
+     * Marks each buffered glyph of the page as hidden if its origin (or also end
+     * point, if checked) is covered by a fill drawn after it.
+     */
+    void resolveOcclusion() {
+        for (TextEntry entry : pageText) {
+            if (isOccluded(entry, entry.startX, entry.startY) ||
+                    (checkEndPointToo && isOccluded(entry, entry.endX, entry.endY))) {
+                cover(entry);
+            }
+        }
+    }
+
+    boolean isOccluded(TextEntry entry, double x, double y) {
+        for (FillEntry fill : fillGrid.query(x, y, x, y)) {
+            if (fill.order > entry.order && contains(fill.path, fill.bounds, x, y))
+                return true;
+        }
+        return false;
+    }
+
+    void cover(TextEntry entry) {
+        coveredText.add(entry.text);
+        if (dropStream != null)
+            dropStream.printf("Covered '%s' at %s,%s\n", entry.text.getUnicode(), entry.startX, entry.startY);
+    }
+
+    /**
+     * Exact test of a path for a candidate point; points outside
+     * the (closed) path bounds are rejected without a path scan.
+     */
+    static boolean contains(Path2D path, Rectangle2D pathBounds, double x, double y) {
+        if (x < pathBounds.getMinX() || x > pathBounds.getMaxX() || y < pathBounds.getMinY() || y > pathBounds.getMaxY())
+            return false;
+        return path.contains(x, y);
+    }
+
+    /**
+     * A collected glyph with its origin and baseline end point in the
+     * coordinates of the path operations.
+     */
+    static class TextEntry {
+        TextEntry(TextPosition text, double startX, double startY, double endX, double endY, int order) {
+            this.text = text;
+            this.startX = startX;
+            this.startY = startY;
+            this.endX = endX;
+            this.endY = endY;
+            this.order = order;
+        }
+
+        final TextPosition text;
+        final double startX;
+        final double startY;
+        final double endX;
+        final double endY;
+        /** the number of glyphs drawn before on the page */
+        final int order;
+    }
+
+    /**
+     * A recorded fill for the deferred occlusion mode.
+     */
+    static class FillEntry {
+        FillEntry(GeneralPath path, Rectangle2D bounds, int order) {
+            this.path = path;
+            this.bounds = bounds;
+            this.order = order;
+        }
+
+        final GeneralPath path;
+        final Rectangle2D bounds;
+        /** the number of glyphs drawn before on the page */
+        final int order;
+    }
+
+    final BoundsGrid<TextEntry> textGrid = new BoundsGrid<>(TEXT_GRID_CELL_SIZE);
+    final List<TextEntry> pageText = new ArrayList<>();
+    final BoundsGrid<FillEntry> fillGrid = new BoundsGrid<>(TEXT_GRID_CELL_SIZE);
+    boolean deferOcclusion = false;
+    final Set<TextPosition> coveredText = Collections.newSetFromMap(new IdentityHashMap<>());
+    Area clipArea = null;
+    Rectangle2D clipBounds = null;
+    boolean clipRectangular = false;
+
+    final static double TEXT_GRID_CELL_SIZE = 24;
+
     public final class AppendRectangleToPath extends OperatorProcessor {
         @Override
         public void process(Operator operator, List<COSBase> operands) throws IOException {
@@ -275,6 +448,7 @@ public class PDFVisibleTextStripper extends PDFTextStripper {
         public void process(Operator operator, List<COSBase> operands) throws IOException {
             linePath.setWindingRule(GeneralPath.WIND_EVEN_ODD);
             getGraphicsState().intersectClippingPath(linePath);
+            clipArea = null;
         }
 
         @Override
@@ -288,6 +462,7 @@ public class PDFVisibleTextStripper extends PDFTextStripper {
         public void process(Operator operator, List<COSBase> operands) throws IOException {
             linePath.setWindingRule(GeneralPath.WIND_NON_ZERO);
             getGraphicsState().intersectClippingPath(linePath);
+            clipArea = null;
         }
 
         @Override
@@ -3,12 +3,13 @@ package mkl.testarea.pdfbox2.extract;
 import java.awt.geom.Area;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -33,6 +34,7 @@ import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
 import org.apache.pdfbox.pdmodel.graphics.state.PDGraphicsState;
+import org.apache.pdfbox.pdmodel.graphics.state.RenderingMode;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.pdfbox.text.TextPosition;
 import org.apache.pdfbox.util.Matrix;
@@ -51,6 +53,29 @@ import org.slf4j.LoggerFactory;
  * changes its underlying data. But there also is an unrelated bug here
  * which doesn't play a role in the question at hand, though.
  * </p>
+ * <p>
+ * If a {@link GlyphRecordConsumer} is set, all glyphs are reported to it
+ * as {@link GlyphRecord} instances with text and background color instead
+ * of logging the glyphs whose color coincides with the background.
+ * </p>
+ * <p>
+ * The fills of the current page are kept in a {@link BoundsGrid} with their
+ * RGB value determined once when recorded, so the background lookup of a glyph
+ * only tests the fills in the grid cell of its center instead of all fills of
+ * the page.
+ * </p>
+ * <p>
+ * {@link #stripPages(int, int, int, PageResultSink)} processes a range of
+ * pages in a single pass, resetting the path and color state at each page
+ * start, and hands a {@link PageResult} per page to a sink. If coordinate
+ * quantization is enabled, background colors are looked up at the center
+ * of the device pixel containing the glyph center at the given resolution,
+ * like a renderer would sample them. As in PDFBox' <code>PDFRenderer</code>,
+ * the pixel grid is anchored at the upper left corner of the rendered, i.e.
+ * rotated, crop box. Pages without contents are not processed
+ * by {@link PDFTextStripper}; the sink receives an empty {@link PageResult}
+ * for them, so it receives exactly one result per page of the range in order.
+ * </p>
  * 
  * @author Dmitry K
  */
@@ -62,13 +87,29 @@ public class PdfToTextInfoConverter extends PDFTextStripper {
 
     private float lowerLeftY = 0;
 
+    private PDRectangle cropBox = null;
+
     private PDPage page = null;
 
     private GeneralPath linePath;
 
-    private Map<GeneralPath, PDColor> filledPaths;
+    private BoundsGrid<FillEntry> filledPaths;
+
+    private Map<TextPosition, GlyphState> glyphStates;
+
+    private GlyphRecordConsumer glyphConsumer = null;
+
+    private final GlyphRecord record = new GlyphRecord();
+
+    private boolean quantizeCoordinates = false;
 
-    private Map<TextPosition, PDColor> nonStrokingColors;
+    private int resolution = 72;
+
+    private PageResultSink pageResultSink = null;
+
+    private PageResult pageResult = null;
+
+    private int nextResultPageNumber = 0;
 
     public PdfToTextInfoConverter(PDDocument pddfDoc) throws IOException {
         addOperator(new SetStrokingColorSpace());
@@ -102,15 +143,53 @@ public class PdfToTextInfoConverter extends PDFTextStripper {
     }
 
     public void stripPage(int pageNum, int resolution) throws IOException {
-        this.setStartPage(pageNum + 1);
-        this.setEndPage(pageNum + 1);
-        page = document.getPage(pageNum);
-        rotation = page.getRotation();
+        stripPages(pageNum, pageNum, resolution, null);
+    }
+
+    /**
+     * Processes the pages from <code>firstPage</code> to <code>lastPage</code>
+     * (zero based, inclusive) in a single pass and hands the result of each
+     * page to the given sink, if any.
+     */
+    public void stripPages(int firstPage, int lastPage, int resolution, PageResultSink sink) throws IOException {
+        if (firstPage < 0 || lastPage < firstPage || lastPage >= document.getNumberOfPages())
+            throw new IllegalArgumentException(String.format("Invalid page range %s to %s for %s pages.", firstPage, lastPage, document.getNumberOfPages()));
+        if (resolution <= 0)
+            throw new IllegalArgumentException(String.format("Resolution must be positive; value: %s.", resolution));
+        this.setStartPage(firstPage + 1);
+        this.setEndPage(lastPage + 1);
+        this.resolution = resolution;
+        this.pageResultSink = sink;
+        this.nextResultPageNumber = firstPage + 1;
         linePath = new GeneralPath();
-        filledPaths = new LinkedHashMap<>();
-        nonStrokingColors = new HashMap<>();    
-        Writer dummy = new OutputStreamWriter(new ByteArrayOutputStream());
-        writeText(document, dummy); // This call starts the parsing process and calls writeString repeatedly.
+        filledPaths = new BoundsGrid<>(FILL_GRID_CELL_SIZE);
+        glyphStates = new IdentityHashMap<>();
+        try {
+            Writer dummy = new OutputStreamWriter(new ByteArrayOutputStream());
+            writeText(document, dummy); // This call starts the parsing process and calls writeString repeatedly.
+            acceptEmptyPageResults(lastPage + 2);
+        } finally {
+            this.pageResultSink = null;
+            pageResult = null;
+        }
+    }
+
+    /**
+     * Enables looking up the background color at the center of the device
+     * pixel containing the glyph center at the resolution given to
+     * {@link #stripPages(int, int, int, PageResultSink)} instead of at the
+     * glyph center itself.
+     */
+    public void setQuantizeCoordinates(boolean quantizeCoordinates) {
+        this.quantizeCoordinates = quantizeCoordinates;
+    }
+
+    /**
+     * Sets a consumer to report all glyphs to instead of logging the
+     * glyphs colored like their background; <code>null</code> restores logging.
+     */
+    public void setGlyphConsumer(GlyphRecordConsumer glyphConsumer) {
+        this.glyphConsumer = glyphConsumer;
     }
 
     @Override
@@ -119,29 +198,123 @@ public class PdfToTextInfoConverter extends PDFTextStripper {
 
         lowerLeftX = pageSize.getLowerLeftX();
         lowerLeftY = pageSize.getLowerLeftY();
+        cropBox = pageSize;
+
+        this.page = page;
+        rotation = page.getRotation();
+        linePath.reset();
+        filledPaths.clear();
+        glyphStates.clear();
+        boolean inRange = getCurrentPageNo() >= getStartPage() && getCurrentPageNo() <= getEndPage();
+        if (inRange)
+            acceptEmptyPageResults(getCurrentPageNo());
+        pageResult = pageResultSink != null && inRange ? new PageResult(getCurrentPageNo()) : null;
 
         super.processPage(page);
+
+        if (pageResult != null) {
+            pageResultSink.accept(pageResult);
+            pageResult = null;
+            nextResultPageNumber = getCurrentPageNo() + 1;
+        }
+    }
+
+    /**
+     * Hands an empty {@link PageResult} to the sink, if any, for each page
+     * skipped for lack of contents before the given one based page number.
+     */
+    private void acceptEmptyPageResults(int pageNumber) throws IOException {
+        if (pageResultSink == null)
+            return;
+        for (; nextResultPageNumber < pageNumber; nextResultPageNumber++)
+            pageResultSink.accept(new PageResult(nextResultPageNumber));
     }
 
     private Integer getCharacterBackgroundColor(TextPosition text) {
-        Integer fillColorRgb = null;
-        try {           
-            for (Map.Entry<GeneralPath, PDColor> filledPath : filledPaths.entrySet()) {
-                Vector center = getTextPositionCenterPoint(text);
-                if (filledPath.getKey().contains(lowerLeftX + center.getX(), lowerLeftY + center.getY())) {
-                    fillColorRgb = filledPath.getValue().toRGB();                   
-                }
+        Vector center = getTextPositionCenterPoint(text);
+        double x = lowerLeftX + center.getX();
+        double y = lowerLeftY + center.getY();
+        if (quantizeCoordinates) {
+            Point2D quantized = quantize(x, y);
+            x = quantized.getX();
+            y = quantized.getY();
+        }
+        FillEntry topmost = null;
+        for (FillEntry fill : filledPaths.query(x, y, x, y)) {
+            if ((topmost == null || fill.order > topmost.order) && fill.bounds.contains(x, y) && fill.path.contains(x, y)) {
+                topmost = fill;
             }
-        } catch (IOException e) {
-            logger.error("Could not convert color to RGB", e);
         }
-        return fillColorRgb;
+        return topmost != null ? topmost.rgb : null;
+    }
+
+    /**
+     * @return the center of the device pixel at the current resolution
+     * containing the given default user space point. Like in the renderer,
+     * device space starts at the upper left corner of the rotated crop box.
+     */
+    private Point2D quantize(double x, double y) {
+        double width = cropBox.getWidth();
+        double height = cropBox.getHeight();
+        // crop box coordinates from its upper left corner, y downwards
+        double u = x - cropBox.getLowerLeftX();
+        double v = cropBox.getUpperRightY() - y;
+
+        double deviceX, deviceY;
+        switch (rotation) {
+        case 90:
+            deviceX = height - v;
+            deviceY = u;
+            break;
+        case 180:
+            deviceX = width - u;
+            deviceY = height - v;
+            break;
+        case 270:
+            deviceX = v;
+            deviceY = width - u;
+            break;
+        default:
+            deviceX = u;
+            deviceY = v;
+        }
+
+        deviceX = pixelCenter(deviceX);
+        deviceY = pixelCenter(deviceY);
+
+        switch (rotation) {
+        case 90:
+            u = deviceY;
+            v = height - deviceX;
+            break;
+        case 180:
+            u = width - deviceX;
+            v = height - deviceY;
+            break;
+        case 270:
+            u = width - deviceY;
+            v = deviceX;
+            break;
+        default:
+            u = deviceX;
+            v = deviceY;
+        }
+        return new Point2D.Double(cropBox.getLowerLeftX() + u, cropBox.getUpperRightY() - v);
+    }
+
+    /**
+     * @return the center of the pixel at the current resolution containing
+     * the given device coordinate in points.
+     */
+    private double pixelCenter(double coordinate) {
+        double pixelSize = 72.0 / resolution;
+        return (Math.floor(coordinate / pixelSize) + .5) * pixelSize;
     }
 
     private int getCharacterColor(TextPosition text) {
         int colorRgb = 0; // assume it's black even if we could not convert to RGB
         try {
-            colorRgb = nonStrokingColors.get(text).toRGB();         
+            colorRgb = glyphStates.get(text).nonStrokingColor.toRGB();
         } catch (IOException e) {
             logger.error("Could not convert color to RGB", e);
         }
@@ -159,7 +332,7 @@ public class PdfToTextInfoConverter extends PDFTextStripper {
         Vector center = getTextPositionCenterPoint(text);
         Area area = gs.getCurrentClippingPath();
         if (area == null || area.contains(lowerLeftX + center.getX(), lowerLeftY + center.getY())) {            
-            nonStrokingColors.put(text, gs.getNonStrokingColor());
+            glyphStates.put(text, new GlyphState(gs.getNonStrokingColor(), gs.getStrokingColor(), gs.getTextState().getRenderingMode()));
             super.processTextPosition(text);
         }
     }
@@ -169,7 +342,19 @@ public class PdfToTextInfoConverter extends PDFTextStripper {
         for (TextPosition text : textPositions) {           
             Integer characterColor = getCharacterColor(text);
             Integer characterBackgroundColor = getCharacterBackgroundColor(text);
-            if ((characterColor != null && characterColor.equals(characterBackgroundColor)) || characterColor == characterBackgroundColor) {
+            boolean coincide = characterColor.equals(characterBackgroundColor);
+            if (glyphConsumer != null || pageResult != null) {
+                GlyphState glyphState = glyphStates.get(text);
+                record.set(getCurrentPageNo(), text, glyphState.renderingMode, characterColor, GlyphRecord.toRgb(glyphState.strokingColor),
+                        characterBackgroundColor != null ? characterBackgroundColor : GlyphRecord.NO_COLOR);
+                if (glyphConsumer != null)
+                    glyphConsumer.accept(record);
+                if (pageResult != null) {
+                    pageResult.glyphCount++;
+                    if (coincide)
+                        pageResult.coincidingGlyphs.add(record.copy());
+                }
+            } else if (coincide) {
                 logger.info(String.format("Color and background coincide for '%s' at %3.2f, %3.2f : %h", text.getUnicode(), text.getX(), text.getY(), characterColor));
             }
         }
@@ -200,10 +385,90 @@ public class PdfToTextInfoConverter extends PDFTextStripper {
         return center;
     }
 
+    /**
+     * Receives the {@link PageResult} of each page processed by
+     * {@link PdfToTextInfoConverter#stripPages(int, int, int, PageResultSink)}.
+     */
+    public interface PageResultSink {
+        void accept(PageResult result) throws IOException;
+    }
+
+    /**
+     * The glyph count of a page and the glyphs colored like their background.
+     */
+    public static class PageResult {
+        PageResult(int pageNumber) {
+            this.pageNumber = pageNumber;
+        }
+
+        /**
+         * @return the one based page number.
+         */
+        public int getPageNumber() {
+            return pageNumber;
+        }
+
+        public int getGlyphCount() {
+            return glyphCount;
+        }
+
+        public List<GlyphRecord> getCoincidingGlyphs() {
+            return coincidingGlyphs;
+        }
+
+        final int pageNumber;
+        int glyphCount = 0;
+        final List<GlyphRecord> coincidingGlyphs = new ArrayList<>();
+    }
+
+    /**
+     * The graphics state values of a glyph required for its record.
+     */
+    static class GlyphState {
+        GlyphState(PDColor nonStrokingColor, PDColor strokingColor, RenderingMode renderingMode) {
+            this.nonStrokingColor = nonStrokingColor;
+            this.strokingColor = strokingColor;
+            this.renderingMode = renderingMode;
+        }
+
+        final PDColor nonStrokingColor;
+        final PDColor strokingColor;
+        final RenderingMode renderingMode;
+    }
+
+    /**
+     * A recorded fill with its bounds, its position in the drawing order of
+     * the page, and its RGB value.
+     */
+    static class FillEntry {
+        FillEntry(GeneralPath path, Rectangle2D bounds, int order, int rgb) {
+            this.path = path;
+            this.bounds = bounds;
+            this.order = order;
+            this.rgb = rgb;
+        }
+
+        final GeneralPath path;
+        final Rectangle2D bounds;
+        final int order;
+        final int rgb;
+    }
+
     void addFillPath(PDColor color) {
-        filledPaths.put((GeneralPath)linePath.clone(), color);
+        int rgb;
+        try {
+            rgb = color.toRGB();
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.error("Could not convert color to RGB", e);
+            return;
+        }
+        GeneralPath path = (GeneralPath)linePath.clone();
+        Rectangle2D bounds = path.getBounds2D();
+        filledPaths.add(new FillEntry(path, bounds, filledPaths.size(), rgb), bounds);
     }
 
+    final static double FILL_GRID_CELL_SIZE = 24;
+
     public final class AppendRectangleToPath extends OperatorProcessor {
         @Override
         public void process(Operator operator, List<COSBase> operands) throws IOException {
@@ -0,0 +1,275 @@
+package mkl.testarea.pdfbox2.extract;
+
+import java.awt.geom.Rectangle2D;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.pdfbox.text.TextPosition;
+
+/**
+ * <a href="http://stackoverflow.com/questions/35937774/how-to-search-some-specific-string-or-a-word-and-there-coordinates-from-a-pdf-do">
+ * How to search some specific string or a word and there coordinates from a pdf document in java
+ * </a>
+ * <p>
+ * This {@link CharSequence} of {@link TextPosition} instances is meant for searching.
+ * In contrast to {@link TextPositionSequence} the characters are determined once
+ * when building the sequence, all characters of the unicode value of a text position
+ * are included (e.g. of ligatures), and there is an index map from characters to text
+ * positions. Separators like word or line breaks can be added as characters without
+ * text position.
+ * </p>
+ * <p>
+ * Searches with a {@link Pattern} or a {@link KeywordMatcher} run directly on the
+ * character array and return {@link Match} instances with their text positions and
+ * bounding box.
+ * </p>
+ *
+ * @author mkl
+ */
+public class SearchableTextSequence implements CharSequence
+{
+    public SearchableTextSequence(List<TextPosition> textPositions)
+    {
+        this(new Builder().add(textPositions));
+    }
+
+    SearchableTextSequence(Builder builder)
+    {
+        this.textPositions = new ArrayList<>(builder.textPositions);
+        this.chars = Arrays.copyOf(builder.chars, builder.length);
+        this.positionIndexes = Arrays.copyOf(builder.positionIndexes, builder.length);
+    }
+
+    /**
+     * Collects text positions and separators for a {@link SearchableTextSequence}.
+     */
+    public static class Builder
+    {
+        public Builder add(List<TextPosition> textPositions)
+        {
+            for (TextPosition textPosition : textPositions)
+                add(textPosition);
+            return this;
+        }
+
+        public Builder add(TextPosition textPosition)
+        {
+            String unicode = textPosition.getUnicode();
+            if (unicode != null && !unicode.isEmpty())
+            {
+                int index = textPositions.size();
+                textPositions.add(textPosition);
+                for (int i = 0; i < unicode.length(); i++)
+                    append(unicode.charAt(i), index);
+            }
+            return this;
+        }
+
+        /**
+         * Adds a character without text position, e.g. a space between words or lines,
+         * unless the sequence is empty or already ends with that character.
+         */
+        public Builder addSeparator(char separator)
+        {
+            if (length > 0 && chars[length - 1] != separator)
+                append(separator, -1);
+            return this;
+        }
+
+        public SearchableTextSequence build()
+        {
+            return new SearchableTextSequence(this);
+        }
+
+        void append(char c, int positionIndex)
+        {
+            if (length == chars.length)
+            {
+                chars = Arrays.copyOf(chars, 2 * length);
+                positionIndexes = Arrays.copyOf(positionIndexes, 2 * length);
+            }
+            chars[length] = c;
+            positionIndexes[length] = positionIndex;
+            length++;
+        }
+
+        final List<TextPosition> textPositions = new ArrayList<>();
+        char[] chars = new char[256];
+        int[] positionIndexes = new int[256];
+        int length = 0;
+    }
+
+    /**
+     * A match in a {@link SearchableTextSequence}.
+     */
+    public static class Match
+    {
+        Match(SearchableTextSequence sequence, int start, int end, String term)
+        {
+            this.sequence = sequence;
+            this.start = start;
+            this.end = end;
+            this.term = term;
+        }
+
+        /**
+         * @return the keyword or pattern matched.
+         */
+        public String getTerm()
+        {
+            return term;
+        }
+
+        public int getStart()
+        {
+            return start;
+        }
+
+        public int getEnd()
+        {
+            return end;
+        }
+
+        public String getText()
+        {
+            return new String(sequence.chars, start, end - start);
+        }
+
+        public List<TextPosition> getTextPositions()
+        {
+            return sequence.textPositionsOf(start, end);
+        }
+
+        /**
+         * @return the bounding box of the text positions of the match in text direction
+         * adjusted coordinates with the y axis pointing downwards or <code>null</code>
+         * if the match consists of separators only.
+         */
+        public Rectangle2D getBounds()
+        {
+            Rectangle2D bounds = null;
+            for (TextPosition textPosition : getTextPositions())
+            {
+                Rectangle2D box = new Rectangle2D.Float(textPosition.getXDirAdj(), textPosition.getYDirAdj() - textPosition.getHeightDir(),
+                        textPosition.getWidthDirAdj(), textPosition.getHeightDir());
+                if (bounds == null)
+                    bounds = box;
+                else
+                    bounds.add(box);
+            }
+            return bounds;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("'%s' at %s-%s", getText(), start, end);
+        }
+
+        final SearchableTextSequence sequence;
+        final int start;
+        final int end;
+        final String term;
+    }
+
+    //
+    // CharSequence implementation
+    //
+    @Override
+    public int length()
+    {
+        return chars.length;
+    }
+
+    @Override
+    public char charAt(int index)
+    {
+        return chars[index];
+    }
+
+    /**
+     * @return a view of the given range, no characters are copied.
+     */
+    @Override
+    public CharSequence subSequence(int start, int end)
+    {
+        return CharBuffer.wrap(chars, start, end - start).slice();
+    }
+
+    @Override
+    public String toString()
+    {
+        return new String(chars);
+    }
+
+    //
+    // index maps
+    //
+    /**
+     * @return the text position the character at the given index belongs to or
+     * <code>null</code> for separators.
+     */
+    public TextPosition textPositionAt(int index)
+    {
+        int positionIndex = positionIndexes[index];
+        return positionIndex < 0 ? null : textPositions.get(positionIndex);
+    }
+
+    /**
+     * @return the distinct text positions of the characters in the given range.
+     */
+    public List<TextPosition> textPositionsOf(int start, int end)
+    {
+        int first = -1, last = -1;
+        for (int i = start; i < end; i++)
+        {
+            if (positionIndexes[i] >= 0)
+            {
+                if (first < 0)
+                    first = positionIndexes[i];
+                last = positionIndexes[i];
+            }
+        }
+        return first < 0 ? Collections.emptyList() : Collections.unmodifiableList(textPositions.subList(first, last + 1));
+    }
+
+    public List<TextPosition> getTextPositions()
+    {
+        return Collections.unmodifiableList(textPositions);
+    }
+
+    //
+    // search
+    //
+    /**
+     * @return all non-overlapping matches of the given pattern.
+     */
+    public List<Match> find(Pattern pattern)
+    {
+        List<Match> matches = new ArrayList<>();
+        Matcher matcher = pattern.matcher(this);
+        while (matcher.find())
+        {
+            if (matcher.end() > matcher.start())
+                matches.add(new Match(this, matcher.start(), matcher.end(), pattern.pattern()));
+        }
+        return matches;
+    }
+
+    /**
+     * @return all matches of the keywords of the given matcher, in a single pass.
+     */
+    public List<Match> find(KeywordMatcher keywordMatcher)
+    {
+        return keywordMatcher.findAll(this);
+    }
+
+    final List<TextPosition> textPositions;
+    final char[] chars;
+    final int[] positionIndexes;
+}
@@ -0,0 +1,380 @@
+package mkl.testarea.pdfbox2.extract;
+
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.TextPosition;
+
+/**
+ * <a href="http://stackoverflow.com/questions/35937774/how-to-search-some-specific-string-or-a-word-and-there-coordinates-from-a-pdf-do">
+ * How to search some specific string or a word and there coordinates from a pdf document in java
+ * </a>
+ * <p>
+ * This class is an inverted index from the words of a document to their pages and
+ * bounding boxes. It is built in a single text extraction pass and can be written to
+ * and read from a compact binary file, so repeated searches in the same document do
+ * not require parsing its content streams again.
+ * </p>
+ * <p>
+ * Words are maximal runs of letters and digits, compared case insensitively. A query
+ * may consist of multiple words; it matches consecutive words of a page, i.e. words
+ * only separated by spaces, punctuation, or line breaks.
+ * </p>
+ *
+ * @author mkl
+ */
+public class TextHitIndex
+{
+    /**
+     * A hit of a query with its one based page number and its bounding box in text
+     * direction adjusted coordinates with the y axis pointing downwards.
+     */
+    public static class Hit
+    {
+        Hit(int pageNumber, Rectangle2D bounds)
+        {
+            this.pageNumber = pageNumber;
+            this.bounds = bounds;
+        }
+
+        public int getPageNumber()
+        {
+            return pageNumber;
+        }
+
+        public Rectangle2D getBounds()
+        {
+            return bounds;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("page %s at %s, %s with size %s x %s", pageNumber, bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+        }
+
+        final int pageNumber;
+        final Rectangle2D bounds;
+    }
+
+    /**
+     * Extracts the text of the given document and indexes its words.
+     */
+    public static TextHitIndex build(PDDocument document) throws IOException
+    {
+        TextHitIndex index = new TextHitIndex(document.getNumberOfPages());
+        PDFTextStripper stripper = new PDFTextStripper()
+        {
+            @Override
+            protected void startPage(PDPage page) throws IOException
+            {
+                builder = new SearchableTextSequence.Builder();
+                super.startPage(page);
+            }
+
+            @Override
+            protected void writeString(String text, List<TextPosition> textPositions) throws IOException
+            {
+                builder.add(textPositions);
+            }
+
+            @Override
+            protected void writeWordSeparator() throws IOException
+            {
+                builder.addSeparator(' ');
+            }
+
+            @Override
+            protected void writeLineSeparator() throws IOException
+            {
+                builder.addSeparator(' ');
+            }
+
+            @Override
+            protected void endPage(PDPage page) throws IOException
+            {
+                super.endPage(page);
+                index.addPage(getCurrentPageNo(), builder.build());
+                builder = null;
+            }
+
+            SearchableTextSequence.Builder builder;
+        };
+        stripper.setSortByPosition(true);
+        stripper.writeText(document, new NullWriter());
+        return index;
+    }
+
+    TextHitIndex(int pageCount)
+    {
+        this.pageCount = pageCount;
+    }
+
+    /**
+     * @return the hits of the given word or sequence of words.
+     */
+    public List<Hit> find(String query)
+    {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= query.length(); i++)
+        {
+            boolean wordChar = i < query.length() && Character.isLetterOrDigit(query.charAt(i));
+            if (wordChar && start < 0)
+                start = i;
+            else if (!wordChar && start >= 0)
+            {
+                words.add(normalize(query.substring(start, i)));
+                start = -1;
+            }
+        }
+        if (words.isEmpty())
+            return Collections.emptyList();
+
+        List<Postings> postingsList = new ArrayList<>();
+        for (String word : words)
+        {
+            Postings postings = terms.get(word);
+            if (postings == null)
+                return Collections.emptyList();
+            postingsList.add(postings);
+        }
+
+        List<Hit> hits = new ArrayList<>();
+        Postings first = postingsList.get(0);
+        for (int i = 0; i < first.size; i++)
+        {
+            Rectangle2D bounds = first.bounds(i);
+            boolean match = true;
+            for (int j = 1; j < postingsList.size() && match; j++)
+            {
+                Postings postings = postingsList.get(j);
+                int k = Arrays.binarySearch(postings.sequenceNumbers, 0, postings.size, first.sequenceNumbers[i] + j);
+                if (k >= 0 && postings.pageNumbers[k] == first.pageNumbers[i])
+                    bounds.add(postings.bounds(k));
+                else
+                    match = false;
+            }
+            if (match)
+                hits.add(new Hit(first.pageNumbers[i], bounds));
+        }
+        return hits;
+    }
+
+    /**
+     * @return the indexed words in normalized form.
+     */
+    public Set<String> getTerms()
+    {
+        return Collections.unmodifiableSet(terms.keySet());
+    }
+
+    public int getPageCount()
+    {
+        return pageCount;
+    }
+
+    //
+    // building
+    //
+    void addPage(int pageNumber, SearchableTextSequence sequence)
+    {
+        int start = -1;
+        for (int i = 0; i <= sequence.length(); i++)
+        {
+            boolean wordChar = i < sequence.length() && Character.isLetterOrDigit(sequence.charAt(i));
+            if (wordChar && start < 0)
+                start = i;
+            else if (!wordChar && start >= 0)
+            {
+                SearchableTextSequence.Match word = new SearchableTextSequence.Match(sequence, start, i, null);
+                terms.computeIfAbsent(normalize(word.getText()), t -> new Postings()).add(pageNumber, sequenceNumber++, word.getBounds());
+                start = -1;
+            }
+        }
+    }
+
+    static String normalize(String word)
+    {
+        return word.toLowerCase(Locale.ROOT);
+    }
+
+    //
+    // persistence
+    //
+    /**
+     * Writes the index in a compact binary format: page numbers and word sequence
+     * numbers are stored as variable length deltas, bounding boxes as floats.
+     */
+    public void write(OutputStream outputStream) throws IOException
+    {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(outputStream));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        writeVarInt(data, pageCount);
+        writeVarInt(data, terms.size());
+        for (Map.Entry<String, Postings> entry : terms.entrySet())
+        {
+            data.writeUTF(entry.getKey());
+            Postings postings = entry.getValue();
+            writeVarInt(data, postings.size);
+            int previousPage = 0, previousSequenceNumber = 0;
+            for (int i = 0; i < postings.size; i++)
+            {
+                writeVarInt(data, postings.pageNumbers[i] - previousPage);
+                writeVarInt(data, postings.sequenceNumbers[i] - previousSequenceNumber);
+                previousPage = postings.pageNumbers[i];
+                previousSequenceNumber = postings.sequenceNumbers[i];
+                for (int j = 4 * i; j < 4 * i + 4; j++)
+                    data.writeFloat(postings.boxes[j]);
+            }
+        }
+        data.flush();
+    }
+
+    public void write(File file) throws IOException
+    {
+        try (   OutputStream outputStream = new FileOutputStream(file)  )
+        {
+            write(outputStream);
+        }
+    }
+
+    public static TextHitIndex read(InputStream inputStream) throws IOException
+    {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(inputStream));
+        if (data.readInt() != MAGIC)
+            throw new IOException("Not a text hit index.");
+        int version = data.readInt();
+        if (version != VERSION)
+            throw new IOException(String.format("Unsupported text hit index version %s.", version));
+        TextHitIndex index = new TextHitIndex(readVarInt(data));
+        int termCount = readVarInt(data);
+        for (int t = 0; t < termCount; t++)
+        {
+            String term = data.readUTF();
+            int size = readVarInt(data);
+            Postings postings = new Postings(size);
+            int pageNumber = 0, sequenceNumber = 0;
+            for (int i = 0; i < size; i++)
+            {
+                pageNumber += readVarInt(data);
+                sequenceNumber += readVarInt(data);
+                postings.add(pageNumber, sequenceNumber, data.readFloat(), data.readFloat(), data.readFloat(), data.readFloat());
+            }
+            index.terms.put(term, postings);
+            index.sequenceNumber = Math.max(index.sequenceNumber, sequenceNumber + 1);
+        }
+        return index;
+    }
+
+    public static TextHitIndex read(File file) throws IOException
+    {
+        try (   InputStream inputStream = new FileInputStream(file)  )
+        {
+            return read(inputStream);
+        }
+    }
+
+    static void writeVarInt(DataOutputStream data, int value) throws IOException
+    {
+        while ((value & ~0x7f) != 0)
+        {
+            data.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        data.writeByte(value);
+    }
+
+    static int readVarInt(DataInputStream data) throws IOException
+    {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7)
+        {
+            int b = data.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed variable length integer.");
+    }
+
+    /**
+     * The occurrences of a word in the order of the document, with page numbers,
+     * word sequence numbers, and bounding boxes in parallel arrays.
+     */
+    static class Postings
+    {
+        Postings()
+        {
+            this(4);
+        }
+
+        Postings(int capacity)
+        {
+            capacity = Math.max(capacity, 1);
+            pageNumbers = new int[capacity];
+            sequenceNumbers = new int[capacity];
+            boxes = new float[4 * capacity];
+        }
+
+        void add(int pageNumber, int sequenceNumber, Rectangle2D bounds)
+        {
+            add(pageNumber, sequenceNumber, (float) bounds.getX(), (float) bounds.getY(), (float) bounds.getWidth(), (float) bounds.getHeight());
+        }
+
+        void add(int pageNumber, int sequenceNumber, float x, float y, float width, float height)
+        {
+            if (size == pageNumbers.length)
+            {
+                pageNumbers = Arrays.copyOf(pageNumbers, 2 * size);
+                sequenceNumbers = Arrays.copyOf(sequenceNumbers, 2 * size);
+                boxes = Arrays.copyOf(boxes, 8 * size);
+            }
+            pageNumbers[size] = pageNumber;
+            sequenceNumbers[size] = sequenceNumber;
+            boxes[4 * size] = x;
+            boxes[4 * size + 1] = y;
+            boxes[4 * size + 2] = width;
+            boxes[4 * size + 3] = height;
+            size++;
+        }
+
+        Rectangle2D bounds(int i)
+        {
+            return new Rectangle2D.Float(boxes[4 * i], boxes[4 * i + 1], boxes[4 * i + 2], boxes[4 * i + 3]);
+        }
+
+        int[] pageNumbers;
+        int[] sequenceNumbers;
+        float[] boxes;
+        int size = 0;
+    }
+
+    final static int MAGIC = 0x50444849; // "PDHI"
+    final static int VERSION = 1;
+
+    final int pageCount;
+    final Map<String, Postings> terms = new HashMap<>();
+    int sequenceNumber = 0;
+}
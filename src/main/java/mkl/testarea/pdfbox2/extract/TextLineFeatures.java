@@ -0,0 +1,108 @@
+package mkl.testarea.pdfbox2.extract;
+
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
+import org.apache.pdfbox.text.TextPosition;
+
+/**
+ * <a href="http://stackoverflow.com/questions/41654518/how-to-read-pdf-departmentsheader-abstract-refrences-with-pdfbox">
+ * How to read PDF departments(header,abstract,refrences) With PDFBox?
+ * </a>
+ * <p>
+ * This class holds the characteristics of a text line used by feature based
+ * {@link TextSectionDefinition}s, determined from the first glyph of the line:
+ * font name, font size, boldness, and indentation in whole points. Lines with
+ * equal features form a line class which the {@link PDFTextSectionStripper}
+ * matches against the definitions only once.
+ * </p>
+ *
+ * @author mkl
+ */
+public class TextLineFeatures
+{
+    public TextLineFeatures(String fontName, float fontSize, boolean bold, int indent)
+    {
+        this.fontName = fontName != null ? fontName : "";
+        this.fontSize = fontSize;
+        this.bold = bold;
+        this.indent = indent;
+    }
+
+    /**
+     * @return the features of the given line of words or <code>null</code> if it contains no glyph.
+     */
+    public static TextLineFeatures of(List<List<TextPosition>> line)
+    {
+        for (List<TextPosition> word : line)
+        {
+            if (!word.isEmpty())
+            {
+                TextPosition first = word.get(0);
+                PDFont font = first.getFont();
+                String fontName = font != null ? font.getName() : null;
+                return new TextLineFeatures(fontName, first.getFontSizeInPt(), isBold(font, fontName), Math.round(first.getXDirAdj()));
+            }
+        }
+        return null;
+    }
+
+    static boolean isBold(PDFont font, String fontName)
+    {
+        if (fontName != null && fontName.toLowerCase().contains("bold"))
+            return true;
+        PDFontDescriptor descriptor = font != null ? font.getFontDescriptor() : null;
+        return descriptor != null && (descriptor.isForceBold() || descriptor.getFontWeight() >= 700);
+    }
+
+    public String getFontName()
+    {
+        return fontName;
+    }
+
+    public float getFontSize()
+    {
+        return fontSize;
+    }
+
+    public boolean isBold()
+    {
+        return bold;
+    }
+
+    public int getIndent()
+    {
+        return indent;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof TextLineFeatures))
+            return false;
+        TextLineFeatures other = (TextLineFeatures) obj;
+        return fontName.equals(other.fontName) && Float.compare(fontSize, other.fontSize) == 0
+                && bold == other.bold && indent == other.indent;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(fontName, fontSize, bold, indent);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s %s%s @%s", fontName, fontSize, bold ? " bold" : "", indent);
+    }
+
+    final String fontName;
+    final float fontSize;
+    final boolean bold;
+    final int indent;
+}
@@ -46,7 +46,7 @@ public class TextSection
         return stringBuilder.toString();
     }
 
-    String toString(List<List<TextPosition>> words)
+    static String toString(List<List<TextPosition>> words)
     {
         StringBuilder stringBuilder = new StringBuilder();
         boolean first = true;
@@ -17,6 +17,11 @@ import org.apache.pdfbox.text.TextPosition;
  * This class defines a section for extraction of semantic text sections which are recognizable
  * by their characteristics of each line alone, e.g. the sample document supplied by the OP.
  * </p>
+ * <p>
+ * Definitions created by {@link #byFeatures(String, Predicate, MultiLine, boolean)} only
+ * depend on the {@link TextLineFeatures} of a line, so the {@link PDFTextSectionStripper}
+ * evaluates them once per line class instead of once per line.
+ * </p>
  * 
  * @author mkl
  */
@@ -31,15 +36,34 @@ public class TextSectionDefinition
     }
 
     public TextSectionDefinition(String name, Predicate<List<List<TextPosition>>> matchPredicate, MultiLine multiLine, boolean multiple)
+    {
+        this(name, matchPredicate, null, multiLine, multiple);
+    }
+
+    TextSectionDefinition(String name, Predicate<List<List<TextPosition>>> matchPredicate, Predicate<TextLineFeatures> featurePredicate, MultiLine multiLine, boolean multiple)
     {
         this.name = name;
         this.matchPredicate = matchPredicate;
+        this.featurePredicate = featurePredicate;
         this.multiLine = multiLine;
         this.multiple = multiple;
     }
 
+    /**
+     * Creates a definition matching lines by their {@link TextLineFeatures} alone.
+     */
+    public static TextSectionDefinition byFeatures(String name, Predicate<TextLineFeatures> featurePredicate, MultiLine multiLine, boolean multiple)
+    {
+        Predicate<List<List<TextPosition>>> matchPredicate = line -> {
+            TextLineFeatures features = TextLineFeatures.of(line);
+            return features != null && featurePredicate.test(features);
+        };
+        return new TextSectionDefinition(name, matchPredicate, featurePredicate, multiLine, multiple);
+    }
+
     final String name;
     final Predicate<List<List<TextPosition>>> matchPredicate;
+    final Predicate<TextLineFeatures> featurePredicate;
     final MultiLine multiLine;
     final boolean multiple;
 }
@@ -0,0 +1,139 @@
+package mkl.testarea.pdfbox2.extract;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.pdfbox.text.TextPosition;
+
+/**
+ * <a href="http://stackoverflow.com/questions/41654518/how-to-read-pdf-departmentsheader-abstract-refrences-with-pdfbox">
+ * How to read PDF departments(header,abstract,refrences) With PDFBox?
+ * </a>
+ * <p>
+ * This class represents a section like {@link TextSection} but only retains the text,
+ * page number, and bounding box of its lines instead of their {@link TextPosition}s.
+ * Such summaries are emitted by the {@link PDFTextSectionStripper} to a
+ * {@link PDFTextSectionStripper.SectionListener} as soon as the section is complete.
+ * </p>
+ *
+ * @author mkl
+ */
+public class TextSectionSummary
+{
+    /**
+     * A line of a section with its text, its one based page number, and its bounding
+     * box in text direction adjusted coordinates with the y axis pointing downwards.
+     */
+    public static class Line
+    {
+        Line(List<List<TextPosition>> words, int pageNumber)
+        {
+            this.text = TextSection.toString(words);
+            this.pageNumber = pageNumber;
+            Rectangle2D bounds = null;
+            for (List<TextPosition> word : words)
+            {
+                for (TextPosition textPosition : word)
+                {
+                    Rectangle2D box = new Rectangle2D.Float(textPosition.getXDirAdj(), textPosition.getYDirAdj() - textPosition.getHeightDir(),
+                            textPosition.getWidthDirAdj(), textPosition.getHeightDir());
+                    if (bounds == null)
+                        bounds = box;
+                    else
+                        bounds.add(box);
+                }
+            }
+            this.bounds = bounds;
+        }
+
+        public String getText()
+        {
+            return text;
+        }
+
+        public int getPageNumber()
+        {
+            return pageNumber;
+        }
+
+        /**
+         * @return the bounding box or <code>null</code> if the line has no glyph.
+         */
+        public Rectangle2D getBounds()
+        {
+            return bounds;
+        }
+
+        final String text;
+        final int pageNumber;
+        final Rectangle2D bounds;
+    }
+
+    TextSectionSummary(TextSectionDefinition definition)
+    {
+        this.definition = definition;
+    }
+
+    public String getName()
+    {
+        return definition.name;
+    }
+
+    public TextSectionDefinition getDefinition()
+    {
+        return definition;
+    }
+
+    /**
+     * @return the header line or <code>null</code> if the section has none.
+     */
+    public Line getHeader()
+    {
+        return header;
+    }
+
+    public List<Line> getBody()
+    {
+        return Collections.unmodifiableList(body);
+    }
+
+    /**
+     * @return the page number of the first line of the section.
+     */
+    public int getFirstPageNumber()
+    {
+        return header != null ? header.pageNumber : body.isEmpty() ? 0 : body.get(0).pageNumber;
+    }
+
+    /**
+     * @return the page number of the last line of the section.
+     */
+    public int getLastPageNumber()
+    {
+        return body.isEmpty() ? getFirstPageNumber() : body.get(body.size() - 1).pageNumber;
+    }
+
+    /**
+     * Formats the section like {@link TextSection#toString()}.
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append(definition.name).append(": ");
+        if (header != null)
+            stringBuilder.append(header.text);
+        stringBuilder.append('\n');
+        for (Line bodyLine : body)
+        {
+            stringBuilder.append("    ").append(bodyLine.text).append('\n');
+        }
+        return stringBuilder.toString();
+    }
+
+    final TextSectionDefinition definition;
+    Line header = null;
+    final List<Line> body = new ArrayList<>();
+}
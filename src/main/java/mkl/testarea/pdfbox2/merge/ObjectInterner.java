@@ -0,0 +1,328 @@
+package mkl.testarea.pdfbox2.merge;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+
+/**
+ * <a href="https://stackoverflow.com/questions/53420344/ho-to-reduce-the-size-of-merged-pdf-a1-b-files-with-pdfbox-or-other-java-library">
+ * Ho to reduce the size of merged PDF A1/b Files with pdfbox or other java library
+ * </a>
+ * <p>
+ * This class keeps a single instance of equal complex PDF objects (arrays,
+ * dictionaries, streams). In contrast to the <code>OptimizeAfterMerge.optimize</code>
+ * test method it does not work in repeated passes over a finished document but
+ * is applied to each newly imported object graph, e.g. right after
+ * {@link org.apache.pdfbox.multipdf.LayerUtility#importPageAsForm(org.apache.pdfbox.pdmodel.PDDocument, org.apache.pdfbox.pdmodel.PDPage)},
+ * replacing objects equal to objects interned before by those earlier objects.
+ * </p>
+ * <p>
+ * Interning works bottom-up: the members of an object are interned first, so
+ * afterwards equal members are identical and an object can be compared to
+ * the interned objects by a hash and a shallow comparison. Stream data is
+ * compared by a SHA-256 digest of the raw (still encoded) data.
+ * </p>
+ * <p>
+ * Objects in reference cycles are left as they are, and so are objects
+ * for which {@link #isInternable(COSBase)} returns <code>false</code>;
+ * their members are interned nonetheless.
+ * </p>
+ *
+ * @author mkl
+ */
+public class ObjectInterner {
+    /**
+     * Interns the given object graph, replacing members equal to objects
+     * interned before by those objects.
+     *
+     * @return the interned object equal to the given one; this is either
+     * the given object itself or an object interned before.
+     */
+    public COSBase intern(COSBase object) throws IOException {
+        return intern(object, new IdentityHashMap<>());
+    }
+
+    /**
+     * @return the number of objects replaced by an interned equal object so far.
+     */
+    public int getReplacedCount() {
+        return replacedCount;
+    }
+
+    /**
+     * @return the raw stream data bytes of the streams replaced by an interned equal stream so far.
+     */
+    public long getReplacedStreamBytes() {
+        return replacedStreamBytes;
+    }
+
+    /**
+     * @return the number of distinct objects interned so far.
+     */
+    public int getInternedCount() {
+        return interned.size();
+    }
+
+    public void clear() {
+        interned.clear();
+        canonical.clear();
+        replacedCount = 0;
+        replacedStreamBytes = 0;
+    }
+
+    /**
+     * Override this method to exclude objects from being replaced or being
+     * used as replacement, e.g. pages which viewers expect to be distinct
+     * objects even if equal. The default allows all objects.
+     */
+    protected boolean isInternable(COSBase object) {
+        return true;
+    }
+
+    /**
+     * Interns the object graph iteratively in post-order with an explicit stack, so
+     * deep graphs like long outline item chains do not overflow the call stack.
+     */
+    COSBase intern(COSBase base, Map<COSBase, COSBase> processed) throws IOException {
+        COSBase result = shortcut(base, processed);
+        if (result != null || base == null)
+            return result;
+
+        List<Frame> stack = new ArrayList<>();
+        Map<COSBase, Integer> stackIndexes = new IdentityHashMap<>();
+        Set<COSBase> cyclic = Collections.newSetFromMap(new IdentityHashMap<>());
+        push(stack, stackIndexes, resolve(base));
+        while (true) {
+            Frame frame = stack.get(stack.size() - 1);
+            if (frame.hasNext()) {
+                COSBase member = frame.member();
+                COSBase internedMember = shortcut(member, processed);
+                if (internedMember == null) {
+                    COSBase object = resolve(member);
+                    Integer stackIndex = stackIndexes.get(object);
+                    if (stackIndex == null) {
+                        push(stack, stackIndexes, object);
+                        continue;
+                    }
+                    // back edge: only the objects from the revisited one upwards form a cycle
+                    for (int i = stackIndex; i < stack.size(); i++)
+                        cyclic.add(stack.get(i).object);
+                    internedMember = object;
+                }
+                frame.next(internedMember);
+                continue;
+            }
+
+            stack.remove(stack.size() - 1);
+            stackIndexes.remove(frame.object);
+            result = complete(frame.object, cyclic.contains(frame.object));
+            processed.put(frame.object, result);
+            if (stack.isEmpty())
+                return result;
+            stack.get(stack.size() - 1).next(result);
+        }
+    }
+
+    /**
+     * @return the interned replacement of the given member if it can be determined
+     * without descending into it, otherwise <code>null</code>.
+     */
+    COSBase shortcut(COSBase base, Map<COSBase, COSBase> processed) {
+        COSBase object = resolve(base);
+        if (object == null)
+            return base;
+        if (!(object instanceof COSArray || object instanceof COSDictionary))
+            return object;
+        if (canonical.containsKey(object))
+            return object;
+        return processed.get(object);
+    }
+
+    static COSBase resolve(COSBase base) {
+        COSBase object = base;
+        while (object instanceof COSObject)
+            object = ((COSObject) object).getObject();
+        return object;
+    }
+
+    static void push(List<Frame> stack, Map<COSBase, Integer> stackIndexes, COSBase object) {
+        stackIndexes.put(object, stack.size());
+        stack.add(new Frame(object));
+    }
+
+    /**
+     * Interns an object whose members all have been interned already.
+     */
+    COSBase complete(COSBase object, boolean inCycle) throws IOException {
+        if (inCycle || !isInternable(object))
+            return object;
+        Key key = new Key(object);
+        COSBase result = interned.get(key);
+        if (result == null) {
+            interned.put(key, object);
+            canonical.put(object, Boolean.TRUE);
+            return object;
+        }
+        result.setDirect(false);
+        replacedCount++;
+        if (object instanceof COSStream)
+            replacedStreamBytes += ((COSStream) object).getLength();
+        return result;
+    }
+
+    /**
+     * An array or dictionary on the stack of {@link ObjectInterner#intern(COSBase, Map)}
+     * with the position of the member to intern next.
+     */
+    static class Frame {
+        Frame(COSBase object) {
+            this.object = object;
+            this.keys = object instanceof COSDictionary ? new ArrayList<>(((COSDictionary) object).keySet()) : null;
+            this.size = keys != null ? keys.size() : ((COSArray) object).size();
+        }
+
+        boolean hasNext() {
+            return index < size;
+        }
+
+        COSBase member() {
+            return keys != null ? ((COSDictionary) object).getItem(keys.get(index)) : ((COSArray) object).get(index);
+        }
+
+        /**
+         * Replaces the current member by its interned replacement, if different, and moves on.
+         */
+        void next(COSBase internedMember) {
+            if (internedMember != member()) {
+                if (keys != null)
+                    ((COSDictionary) object).setItem(keys.get(index), internedMember);
+                else
+                    ((COSArray) object).set(index, internedMember);
+            }
+            index++;
+        }
+
+        final COSBase object;
+        final List<COSName> keys;
+        final int size;
+        int index = 0;
+    }
+
+    /**
+     * A hash map key for an array, dictionary, or stream whose complex
+     * members already are interned.
+     */
+    static class Key {
+        Key(COSBase object) throws IOException {
+            this.object = object;
+            this.digest = object instanceof COSStream ? digest((COSStream) object) : null;
+            this.hash = calculateHash();
+        }
+
+        int calculateHash() {
+            if (object instanceof COSArray) {
+                int result = 1;
+                for (COSBase member : (COSArray) object)
+                    result = 31 * result + hash(member);
+                return result;
+            } else {
+                COSDictionary dictionary = (COSDictionary) object;
+                int result = 3;
+                for (COSName key : dictionary.keySet())
+                    result += key.hashCode() ^ hash(dictionary.getItem(key));
+                if (digest != null)
+                    result = 31 * result + Arrays.hashCode(digest);
+                return result;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            if (hash != other.hash || object.getClass() != other.object.getClass())
+                return false;
+            if (object instanceof COSArray) {
+                COSArray array = (COSArray) object;
+                COSArray otherArray = (COSArray) other.object;
+                if (array.size() != otherArray.size())
+                    return false;
+                for (int i = 0; i < array.size(); i++) {
+                    if (!same(array.get(i), otherArray.get(i)))
+                        return false;
+                }
+                return true;
+            } else {
+                COSDictionary dictionary = (COSDictionary) object;
+                COSDictionary otherDictionary = (COSDictionary) other.object;
+                if (dictionary.size() != otherDictionary.size())
+                    return false;
+                for (COSName key : dictionary.keySet()) {
+                    if (!same(dictionary.getItem(key), otherDictionary.getItem(key)))
+                        return false;
+                }
+                return Arrays.equals(digest, other.digest);
+            }
+        }
+
+        static int hash(COSBase member) {
+            if (member instanceof COSArray || member instanceof COSDictionary)
+                return System.identityHashCode(member);
+            return member == null ? 0 : member.hashCode();
+        }
+
+        static boolean same(COSBase a, COSBase b) {
+            if (a == b)
+                return true;
+            if (a == null || b == null)
+                return false;
+            if (a instanceof COSArray || a instanceof COSDictionary || a instanceof COSObject)
+                return false;
+            return a.equals(b);
+        }
+
+        static byte[] digest(COSStream stream) throws IOException {
+            try (   InputStream data = stream.createRawInputStream()   ) {
+                MessageDigest md = MessageDigest.getInstance("SHA-256");
+                byte[] buffer = new byte[8192];
+                int bytesRead = 0;
+                while((bytesRead = data.read(buffer)) >= 0)
+                    md.update(buffer, 0, bytesRead);
+                return md.digest();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(e);
+            }
+        }
+
+        final COSBase object;
+        final byte[] digest;
+        final int hash;
+    }
+
+    final Map<Key, COSBase> interned = new HashMap<>();
+    final Map<COSBase, Boolean> canonical = new IdentityHashMap<>();
+    int replacedCount = 0;
+    long replacedStreamBytes = 0;
+}
@@ -0,0 +1,132 @@
+package mkl.testarea.pdfbox2.merge;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+
+import mkl.testarea.pdfbox2.merge.PdfDenseMergeTool.InputSupplier;
+
+/**
+ * <p>
+ * This class runs the page analysis step of the dense merge tools, i.e. the
+ * {@link mkl.testarea.pdfbox2.extract.BoundingBoxFinder} of the {@link PdfDenseMergeTool}
+ * and the {@link PageVerticalAnalyzer} of the {@link PdfVeryDenseMergeTool}, for all
+ * pages of all inputs concurrently, before the sequential layout step starts.
+ * </p>
+ * <p>
+ * As a {@link PDDocument} is not thread safe, each input is loaded by the worker
+ * analyzing it into its own document copy which is not shared with any other
+ * thread, neither with the other workers nor with the layout step. The results
+ * are returned in input and page order, so the layout step produces the same
+ * output as when analyzing page by page during layout.
+ * </p>
+ *
+ * @author mkl
+ */
+class ParallelPageAnalysis<T>
+{
+    /**
+     * The analysis to apply to each single page.
+     */
+    interface PageAnalysis<T>
+    {
+        T analyze(PDPage page) throws IOException;
+    }
+
+    /**
+     * Creates the analysis of the pages of a single document, e.g. one sharing
+     * a {@link mkl.testarea.pdfbox2.extract.GlyphBoundsCache} for that document.
+     */
+    interface PageAnalysisFactory<T>
+    {
+        PageAnalysis<T> create();
+    }
+
+    ParallelPageAnalysis(PageAnalysisFactory<T> pageAnalysisFactory, int parallelism)
+    {
+        if (parallelism < 1)
+            throw new IllegalArgumentException(String.format("Parallelism must be positive; value: %s.", parallelism));
+        this.pageAnalysisFactory = pageAnalysisFactory;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return a list containing for each input the list of analysis results of its pages.
+     */
+    List<List<T>> analyze(List<? extends InputSupplier> inputs, MemoryUsageSetting memoryUsageSetting) throws IOException
+    {
+        MemoryUsageSetting partitionedSetting = memoryUsageSetting.getPartitionedCopy(parallelism);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try
+        {
+            List<Future<List<T>>> futures = new ArrayList<>(inputs.size());
+            for (InputSupplier input : inputs)
+            {
+                futures.add(executor.submit(() -> analyze(input, partitionedSetting)));
+            }
+
+            List<List<T>> results = new ArrayList<>(inputs.size());
+            for (Future<List<T>> future : futures)
+            {
+                results.add(get(future));
+            }
+            return results;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    List<T> analyze(InputSupplier input, MemoryUsageSetting memoryUsageSetting) throws IOException
+    {
+        try (   PDDocument document = input.load(memoryUsageSetting)   )
+        {
+            List<T> results = new ArrayList<>(document.getNumberOfPages());
+            PageAnalysis<T> pageAnalysis = pageAnalysisFactory.create();
+            for (PDPage page : document.getPages())
+            {
+                results.add(pageAnalysis.analyze(page));
+            }
+            return results;
+        }
+    }
+
+    static <T> T get(Future<T> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interruptedIOException = new InterruptedIOException("Interrupted while waiting for page analysis.");
+            interruptedIOException.initCause(e);
+            throw interruptedIOException;
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    final PageAnalysisFactory<T> pageAnalysisFactory;
+    final int parallelism;
+}
@@ -1,9 +1,15 @@
 package mkl.testarea.pdfbox2.merge;
 
 import java.awt.geom.Rectangle2D;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
 
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.multipdf.LayerUtility;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
@@ -13,6 +19,7 @@ import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
 import org.apache.pdfbox.util.Matrix;
 
 import mkl.testarea.pdfbox2.extract.BoundingBoxFinder;
+import mkl.testarea.pdfbox2.extract.GlyphBoundsCache;
 
 /**
  * <a href="https://stackoverflow.com/questions/54283827/pdf-files-merge-remove-blank-at-end-of-page-i-am-using-pdfbox-v2-0-13-to-achi">
@@ -22,6 +29,11 @@ import mkl.testarea.pdfbox2.extract.BoundingBoxFinder;
  * This class allows a dense merging of multiple input PDFs.
  * It is a port of the iText 5 class <code>mkl.testarea.itext5.merge.PdfDenseMergeTool</code>.
  * </p>
+ * <p>
+ * For large batches use {@link #merge(OutputStream, Iterable, MemoryUsageSetting)}
+ * which loads each input only when it is needed and closes it again as soon as its
+ * pages are placed.
+ * </p>
  * 
  * @author mkl
  */
@@ -34,6 +46,17 @@ public class PdfDenseMergeTool {
         this.gap = gap;
     }
 
+    /**
+     * Sets whether objects imported from the sources shall be interned, i.e. whether
+     * equal fonts, images, color profiles etc. from different sources (or different
+     * pages of the same source) shall be stored only once in the target, see
+     * {@link ObjectInterner}. This costs a digest calculation for each imported stream.
+     */
+    public void setInternImportedObjects(boolean internImportedObjects)
+    {
+        this.internImportedObjects = internImportedObjects;
+    }
+
     public void merge(OutputStream outputStream, Iterable<PDDocument> inputs) throws IOException
     {
         try
@@ -56,9 +79,125 @@ public class PdfDenseMergeTool {
         
     }
 
+    /**
+     * <p>
+     * This method merges the inputs provided by the given suppliers in a streaming
+     * manner: Each input is loaded only when its turn has come, and it is closed
+     * again right after its pages have been imported into the target. Thus, at any
+     * time only a single input document is open.
+     * </p>
+     * <p>
+     * The given {@link MemoryUsageSetting} is shared between the target document and
+     * the currently open input document. Stream data exceeding the main memory part
+     * of it is buffered in scratch files. Target pages are finished and their content
+     * streams are written to that buffer as soon as the next target page is started.
+     * </p>
+     */
+    public void merge(OutputStream outputStream, Iterable<? extends InputSupplier> inputs, MemoryUsageSetting memoryUsageSetting) throws IOException
+    {
+        merge(outputStream, inputs, memoryUsageSetting, null);
+    }
+
+    /**
+     * <p>
+     * This method merges the inputs provided by the given suppliers like
+     * {@link #merge(OutputStream, Iterable, MemoryUsageSetting)} but first
+     * determines the bounding boxes of all input pages concurrently using
+     * the given number of worker threads, see {@link ParallelPageAnalysis}.
+     * The result is the same as that of the sequential merge.
+     * </p>
+     * <p>
+     * Beware, each input is loaded twice, once by an analysis worker and
+     * once for the import into the target.
+     * </p>
+     */
+    public void merge(OutputStream outputStream, List<? extends InputSupplier> inputs, MemoryUsageSetting memoryUsageSetting, int parallelism) throws IOException
+    {
+        ParallelPageAnalysis<Rectangle2D> analysis = new ParallelPageAnalysis<>(() -> {
+            GlyphBoundsCache glyphBoundsCache = new GlyphBoundsCache();
+            return page -> findBoundingBox(page, glyphBoundsCache);
+        }, parallelism);
+        List<List<Rectangle2D>> boundingBoxes = analysis.analyze(inputs, memoryUsageSetting);
+        merge(outputStream, inputs, memoryUsageSetting, boundingBoxes.iterator());
+    }
+
+    void merge(OutputStream outputStream, Iterable<? extends InputSupplier> inputs, MemoryUsageSetting memoryUsageSetting, Iterator<List<Rectangle2D>> boundingBoxes) throws IOException
+    {
+        MemoryUsageSetting partitionedSetting = memoryUsageSetting.getPartitionedCopy(2);
+        try
+        {
+            openDocument(partitionedSetting);
+            for (InputSupplier input: inputs)
+            {
+                try (   PDDocument inputDocument = input.load(partitionedSetting)   )
+                {
+                    if (boundingBoxes == null)
+                        merge(inputDocument);
+                    else
+                        merge(inputDocument, boundingBoxes.next());
+                }
+            }
+            if (currentContents != null) {
+                currentContents.close();
+                currentContents = null;
+            }
+            document.save(outputStream);
+        }
+        finally
+        {
+            closeDocument();
+        }
+    }
+
+    /**
+     * Supplier of an input document for the streaming merge
+     * {@link PdfDenseMergeTool#merge(OutputStream, Iterable, MemoryUsageSetting)}.
+     * Each supplier is asked for its document exactly once.
+     */
+    public interface InputSupplier
+    {
+        PDDocument load(MemoryUsageSetting memoryUsageSetting) throws IOException;
+    }
+
+    /**
+     * Factory for the input streams of {@link PdfDenseMergeTool#fromStreams(StreamFactory)}.
+     */
+    public interface StreamFactory
+    {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * @return an {@link InputSupplier} loading the given file with random access.
+     */
+    public static InputSupplier fromFile(File file)
+    {
+        return memoryUsageSetting -> PDDocument.load(file, memoryUsageSetting);
+    }
+
+    /**
+     * @return an {@link InputSupplier} loading from a stream which is opened only
+     * when the document is requested and closed right after loading.
+     */
+    public static InputSupplier fromStreams(StreamFactory streamFactory)
+    {
+        return memoryUsageSetting -> {
+            try (   InputStream inputStream = streamFactory.open()  )
+            {
+                return PDDocument.load(inputStream, memoryUsageSetting);
+            }
+        };
+    }
+
     void openDocument() throws IOException
     {
-        document = new PDDocument();
+        openDocument(MemoryUsageSetting.setupMainMemoryOnly());
+    }
+
+    void openDocument(MemoryUsageSetting memoryUsageSetting) throws IOException
+    {
+        document = new PDDocument(memoryUsageSetting);
+        objectInterner = internImportedObjects ? new ObjectInterner() : null;
         newPage();
     }
 
@@ -75,6 +214,7 @@ public class PdfDenseMergeTool {
         finally
         {
             this.document = null;
+            this.objectInterner = null;
             this.yPosition = 0;
         }
     }
@@ -93,18 +233,37 @@ public class PdfDenseMergeTool {
 
     void merge(PDDocument input) throws IOException
     {
+        GlyphBoundsCache glyphBoundsCache = new GlyphBoundsCache();
         for (PDPage page : input.getPages())
         {
-            merge(input, page);
+            merge(input, page, glyphBoundsCache);
         }
     }
 
-    void merge(PDDocument sourceDoc, PDPage page) throws IOException
+    void merge(PDDocument input, List<Rectangle2D> boundingBoxes) throws IOException
     {
-        PDRectangle pageSizeToImport = page.getCropBox();
-        BoundingBoxFinder boundingBoxFinder = new BoundingBoxFinder(page);
+        int index = 0;
+        for (PDPage page : input.getPages())
+        {
+            merge(input, page, boundingBoxes.get(index++));
+        }
+    }
+
+    void merge(PDDocument sourceDoc, PDPage page, GlyphBoundsCache glyphBoundsCache) throws IOException
+    {
+        merge(sourceDoc, page, findBoundingBox(page, glyphBoundsCache));
+    }
+
+    static Rectangle2D findBoundingBox(PDPage page, GlyphBoundsCache glyphBoundsCache) throws IOException
+    {
+        BoundingBoxFinder boundingBoxFinder = new BoundingBoxFinder(page, glyphBoundsCache);
         boundingBoxFinder.processPage(page);
-        Rectangle2D boundingBoxToImport = boundingBoxFinder.getBoundingBox();
+        return boundingBoxFinder.getBoundingBox();
+    }
+
+    void merge(PDDocument sourceDoc, PDPage page, Rectangle2D boundingBoxToImport) throws IOException
+    {
+        PDRectangle pageSizeToImport = page.getCropBox();
         double heightToImport = boundingBoxToImport.getHeight();
         float maxHeight = pageSize.getHeight() - topMargin - bottomMargin;
         if (heightToImport > maxHeight)
@@ -120,6 +279,8 @@ public class PdfDenseMergeTool {
 
         LayerUtility layerUtility = new LayerUtility(document);
         PDFormXObject form = layerUtility.importPageAsForm(sourceDoc, page);
+        if (objectInterner != null)
+            form = new PDFormXObject((COSStream) objectInterner.intern(form.getCOSObject()));
 
         currentContents.saveGraphicsState();
         Matrix matrix = Matrix.getTranslateInstance(0, (float)(yPosition - (boundingBoxToImport.getMinY() - pageSizeToImport.getLowerLeftY())));
@@ -133,6 +294,9 @@ public class PdfDenseMergeTool {
     PDPageContentStream currentContents = null;
     float yPosition = 0; 
 
+    boolean internImportedObjects = false;
+    ObjectInterner objectInterner = null;
+
     final PDRectangle pageSize;
     final float topMargin;
     final float bottomMargin;
@@ -0,0 +1,88 @@
+package mkl.testarea.pdfbox2.merge;
+
+import java.io.IOException;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/**
+ * <a href="https://stackoverflow.com/questions/53420344/ho-to-reduce-the-size-of-merged-pdf-a1-b-files-with-pdfbox-or-other-java-library">
+ * Ho to reduce the size of merged PDF A1/b Files with pdfbox or other java library
+ * </a>
+ * <br/>
+ * <a href="https://stackoverflow.com/questions/54978922/why-compress-pdf-programatically-is-undocumented-and-difficult">
+ * why compress pdf programatically is undocumented and difficult
+ * </a>
+ * <p>
+ * This class removes identical duplicates (in particular streams) from a
+ * document, e.g. from the result of a plain merge of documents sharing fonts
+ * and images. It is the main source successor of the test method
+ * <code>OptimizeAfterMerge.optimize(PDDocument)</code>; instead of repeated
+ * passes comparing all objects until nothing changes anymore, it interns
+ * the object graph of the document catalog bottom-up in a single pass using
+ * an {@link ObjectInterner}, i.e. each object is hashed and compared once
+ * based on its already interned members.
+ * </p>
+ * <p>
+ * In contrast to the original test method, this class does not collapse
+ * equal pages, page tree nodes, or annotations as viewers expect these to be
+ * distinct objects. Objects in reference cycles are not collapsed either.
+ * </p>
+ *
+ * @author mkl
+ */
+public class PdfMergeOptimizer {
+    /**
+     * Removes identical duplicates from the given document. The statistics
+     * getters afterwards return the numbers for this call.
+     */
+    public void optimize(PDDocument pdDocument) throws IOException {
+        ObjectInterner interner = new ObjectInterner() {
+            @Override
+            protected boolean isInternable(COSBase object) {
+                return !(object instanceof COSDictionary) || !isExcluded((COSDictionary) object);
+            }
+        };
+        interner.intern(pdDocument.getDocumentCatalog().getCOSObject());
+
+        mergedObjects = interner.getReplacedCount();
+        savedStreamBytes = interner.getReplacedStreamBytes();
+        distinctObjects = interner.getInternedCount();
+    }
+
+    /**
+     * @return the number of objects replaced by an equal object in the last run.
+     */
+    public int getMergedObjects() {
+        return mergedObjects;
+    }
+
+    /**
+     * @return the raw data bytes of the streams replaced by an equal stream in
+     * the last run; this approximates the number of bytes saved in the result.
+     */
+    public long getSavedStreamBytes() {
+        return savedStreamBytes;
+    }
+
+    /**
+     * @return the number of distinct complex objects kept in the last run.
+     */
+    public int getDistinctObjects() {
+        return distinctObjects;
+    }
+
+    static boolean isExcluded(COSDictionary dictionary) {
+        COSName type = dictionary.getCOSName(COSName.TYPE);
+        if (COSName.PAGE.equals(type) || COSName.PAGES.equals(type) || COSName.CATALOG.equals(type) || COSName.ANNOT.equals(type))
+            return true;
+        // annotations often come without type entry
+        return dictionary.containsKey(COSName.SUBTYPE) && dictionary.containsKey(COSName.RECT);
+    }
+
+    int mergedObjects = 0;
+    long savedStreamBytes = 0;
+    int distinctObjects = 0;
+}
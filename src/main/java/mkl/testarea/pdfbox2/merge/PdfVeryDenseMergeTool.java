@@ -2,8 +2,12 @@ package mkl.testarea.pdfbox2.merge;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.multipdf.LayerUtility;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
@@ -12,6 +16,9 @@ import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
 import org.apache.pdfbox.util.Matrix;
 
+import mkl.testarea.pdfbox2.extract.GlyphBoundsCache;
+import mkl.testarea.pdfbox2.merge.PdfDenseMergeTool.InputSupplier;
+
 /**
  * <a href="https://stackoverflow.com/questions/60052967/how-to-dense-merge-pdf-files-using-pdfbox-2-without-whitespace-near-page-breaks">
  * How to dense merge PDF files using PDFBox 2 without whitespace near page breaks?
@@ -20,6 +27,15 @@ import org.apache.pdfbox.util.Matrix;
  * This class allows a very dense merging of multiple input PDFs.
  * It is a port of the iText 5 class <code>mkl.testarea.itext5.merge.PdfVeryDenseMergeTool</code>.
  * </p>
+ * <p>
+ * By default the source content is placed in source order, each target page being
+ * filled as far as possible. If source order need not be kept, see
+ * {@link #setKeepSourceOrder(boolean)}, the tool instead cuts each source page into
+ * slices fitting on a target page and packs the slices from a window of pending
+ * ones, see {@link #setLookaheadWindow(int)}, into target pages, each time choosing
+ * the combination filling the current target page best. This usually results in
+ * fewer target pages.
+ * </p>
  * 
  * @author mkl
  */
@@ -32,6 +48,38 @@ public class PdfVeryDenseMergeTool {
         this.gap = gap;
     }
 
+    /**
+     * Sets whether objects imported from the sources shall be interned, i.e. whether
+     * equal fonts, images, color profiles etc. from different sources (or different
+     * pages of the same source) shall be stored only once in the target, see
+     * {@link ObjectInterner}. This costs a digest calculation for each imported stream.
+     */
+    public void setInternImportedObjects(boolean internImportedObjects)
+    {
+        this.internImportedObjects = internImportedObjects;
+    }
+
+    /**
+     * Sets whether source content has to be placed in source order (the default)
+     * or may be reordered to reduce the number of target pages.
+     */
+    public void setKeepSourceOrder(boolean keepSourceOrder)
+    {
+        this.keepSourceOrder = keepSourceOrder;
+    }
+
+    /**
+     * Sets the number of pending slices considered for each target page if
+     * source order need not be kept. The effort of selecting slices grows
+     * exponentially with this number in the worst case; the default is 8.
+     */
+    public void setLookaheadWindow(int lookaheadWindow)
+    {
+        if (lookaheadWindow < 1 || lookaheadWindow > 24)
+            throw new IllegalArgumentException(String.format("Lookahead window must be between 1 and 24; value: %s.", lookaheadWindow));
+        this.lookaheadWindow = lookaheadWindow;
+    }
+
     public void merge(OutputStream outputStream, Iterable<PDDocument> inputs) throws IOException
     {
         try
@@ -41,6 +89,7 @@ public class PdfVeryDenseMergeTool {
             {
                 merge(input);
             }
+            placePendingSlices();
             if (currentContents != null) {
                 currentContents.close();
                 currentContents = null;
@@ -54,9 +103,70 @@ public class PdfVeryDenseMergeTool {
         
     }
 
+    /**
+     * This method merges the inputs provided by the given suppliers in a streaming
+     * manner, cf. {@link PdfDenseMergeTool#merge(OutputStream, Iterable, MemoryUsageSetting)}.
+     */
+    public void merge(OutputStream outputStream, Iterable<? extends InputSupplier> inputs, MemoryUsageSetting memoryUsageSetting) throws IOException
+    {
+        merge(outputStream, inputs, memoryUsageSetting, null);
+    }
+
+    /**
+     * This method merges the inputs provided by the given suppliers like
+     * {@link #merge(OutputStream, Iterable, MemoryUsageSetting)} but first
+     * determines the vertical flips of all input pages concurrently using
+     * the given number of worker threads, see {@link ParallelPageAnalysis}.
+     * The result is the same as that of the sequential merge.
+     */
+    public void merge(OutputStream outputStream, List<? extends InputSupplier> inputs, MemoryUsageSetting memoryUsageSetting, int parallelism) throws IOException
+    {
+        ParallelPageAnalysis<List<Float>> analysis = new ParallelPageAnalysis<>(() -> {
+            GlyphBoundsCache glyphBoundsCache = new GlyphBoundsCache();
+            return page -> findVerticalFlips(page, glyphBoundsCache);
+        }, parallelism);
+        List<List<List<Float>>> verticalFlips = analysis.analyze(inputs, memoryUsageSetting);
+        merge(outputStream, inputs, memoryUsageSetting, verticalFlips.iterator());
+    }
+
+    void merge(OutputStream outputStream, Iterable<? extends InputSupplier> inputs, MemoryUsageSetting memoryUsageSetting, Iterator<List<List<Float>>> verticalFlips) throws IOException
+    {
+        MemoryUsageSetting partitionedSetting = memoryUsageSetting.getPartitionedCopy(2);
+        try
+        {
+            openDocument(partitionedSetting);
+            for (InputSupplier input: inputs)
+            {
+                try (   PDDocument inputDocument = input.load(partitionedSetting)   )
+                {
+                    if (verticalFlips == null)
+                        merge(inputDocument);
+                    else
+                        merge(inputDocument, verticalFlips.next());
+                }
+            }
+            placePendingSlices();
+            if (currentContents != null) {
+                currentContents.close();
+                currentContents = null;
+            }
+            document.save(outputStream);
+        }
+        finally
+        {
+            closeDocument();
+        }
+    }
+
     void openDocument() throws IOException
     {
-        document = new PDDocument();
+        openDocument(MemoryUsageSetting.setupMainMemoryOnly());
+    }
+
+    void openDocument(MemoryUsageSetting memoryUsageSetting) throws IOException
+    {
+        document = new PDDocument(memoryUsageSetting);
+        objectInterner = internImportedObjects ? new ObjectInterner() : null;
         newPage();
     }
 
@@ -73,7 +183,9 @@ public class PdfVeryDenseMergeTool {
         finally
         {
             this.document = null;
+            this.objectInterner = null;
             this.yPosition = 0;
+            this.pendingSlices.clear();
         }
     }
     
@@ -91,24 +203,56 @@ public class PdfVeryDenseMergeTool {
 
     void merge(PDDocument input) throws IOException
     {
+        GlyphBoundsCache glyphBoundsCache = new GlyphBoundsCache();
         for (PDPage page : input.getPages())
         {
-            merge(input, page);
+            merge(input, page, glyphBoundsCache);
         }
     }
 
-    void merge(PDDocument sourceDoc, PDPage page) throws IOException
+    void merge(PDDocument input, List<List<Float>> verticalFlips) throws IOException
     {
-        PDRectangle pageSizeToImport = page.getCropBox();
+        int index = 0;
+        for (PDPage page : input.getPages())
+        {
+            merge(input, page, verticalFlips.get(index++));
+        }
+    }
 
-        PageVerticalAnalyzer analyzer = new PageVerticalAnalyzer(page);
+    void merge(PDDocument sourceDoc, PDPage page, GlyphBoundsCache glyphBoundsCache) throws IOException
+    {
+        merge(sourceDoc, page, findVerticalFlips(page, glyphBoundsCache));
+    }
+
+    static List<Float> findVerticalFlips(PDPage page, GlyphBoundsCache glyphBoundsCache) throws IOException
+    {
+        PageVerticalAnalyzer analyzer = new PageVerticalAnalyzer(page, glyphBoundsCache);
         analyzer.processPage(page);
-        List<Float> verticalFlips = analyzer.getVerticalFlips();
+        return analyzer.getVerticalFlips();
+    }
+
+    void merge(PDDocument sourceDoc, PDPage page, List<Float> verticalFlips) throws IOException
+    {
+        PDRectangle pageSizeToImport = page.getCropBox();
+
         if (verticalFlips.size() < 2)
             return;
 
         LayerUtility layerUtility = new LayerUtility(document);
         PDFormXObject form = layerUtility.importPageAsForm(sourceDoc, page);
+        if (objectInterner != null)
+            form = new PDFormXObject((COSStream) objectInterner.intern(form.getCOSObject()));
+
+        if (!keepSourceOrder)
+        {
+            for (Slice slice : cutIntoSlices(page, form, verticalFlips))
+            {
+                pendingSlices.add(slice);
+                if (pendingSlices.size() >= lookaheadWindow)
+                    placeSlices();
+            }
+            return;
+        }
 
         int startFlip = verticalFlips.size() - 1;
         boolean first = true;
@@ -124,16 +268,7 @@ public class PdfVeryDenseMergeTool {
             if (endFlip < startFlip)
             {
                 float height = verticalFlips.get(startFlip) - verticalFlips.get(endFlip);
-
-                currentContents.saveGraphicsState();
-                currentContents.addRect(0, yPosition - height, pageSizeToImport.getWidth(), height);
-                currentContents.clip();
-                Matrix matrix = Matrix.getTranslateInstance(0, (float)(yPosition - (verticalFlips.get(startFlip) - pageSizeToImport.getLowerLeftY())));
-                currentContents.transform(matrix);
-                currentContents.drawForm(form);
-                currentContents.restoreGraphicsState();
-
-                yPosition -= height + gap;
+                draw(form, pageSizeToImport, verticalFlips.get(startFlip), height);
                 startFlip = endFlip - 1;
             }
             else if (!first) 
@@ -142,11 +277,162 @@ public class PdfVeryDenseMergeTool {
         }
     }
 
+    void draw(PDFormXObject form, PDRectangle pageSizeToImport, float top, float height) throws IOException
+    {
+        currentContents.saveGraphicsState();
+        currentContents.addRect(0, yPosition - height, pageSizeToImport.getWidth(), height);
+        currentContents.clip();
+        Matrix matrix = Matrix.getTranslateInstance(0, (float)(yPosition - (top - pageSizeToImport.getLowerLeftY())));
+        currentContents.transform(matrix);
+        currentContents.drawForm(form);
+        currentContents.restoreGraphicsState();
+
+        yPosition -= height + gap;
+    }
+
+    //
+    // Packing layout
+    //
+    /**
+     * Cuts the used vertical sections of the given page into slices as large as
+     * possible, each fitting on an empty target page. Slices without height are
+     * dropped.
+     */
+    List<Slice> cutIntoSlices(PDPage page, PDFormXObject form, List<Float> verticalFlips)
+    {
+        PDRectangle pageSizeToImport = page.getCropBox();
+        float maxHeight = pageSize.getHeight() - topMargin - bottomMargin;
+        List<Slice> slices = new ArrayList<>();
+        int startFlip = verticalFlips.size() - 1;
+        while (startFlip > 0)
+        {
+            int endFlip = startFlip + 1;
+            while ((endFlip > 1) && (verticalFlips.get(startFlip) - verticalFlips.get(endFlip - 2) < maxHeight))
+                endFlip -=2;
+            if (endFlip >= startFlip)
+                throw new IllegalArgumentException(String.format("Page %s content sections too large.", page));
+            float top = verticalFlips.get(startFlip);
+            float height = top - verticalFlips.get(endFlip);
+            // a slice without height is clipped away completely anyways
+            if (height > 0)
+                slices.add(new Slice(form, pageSizeToImport, top, height, sliceCount++));
+            startFlip = endFlip - 1;
+        }
+        return slices;
+    }
+
+    /**
+     * Places the combination of pending slices filling the current target page
+     * best. If none of them fits anymore, a new target page is started first.
+     */
+    void placeSlices() throws IOException
+    {
+        List<Slice> selection = selectSlices(yPosition - pageSize.getLowerLeftY() - bottomMargin);
+        if (selection.isEmpty())
+        {
+            newPage();
+            selection = selectSlices(yPosition - pageSize.getLowerLeftY() - bottomMargin);
+            if (selection.isEmpty())
+                throw new IllegalStateException("No pending slice fits on an empty page.");
+        }
+        selection.sort((a, b) -> Integer.compare(a.index, b.index));
+        for (Slice slice : selection)
+        {
+            draw(slice.form, slice.pageSizeToImport, slice.top, slice.height);
+        }
+        pendingSlices.removeAll(selection);
+    }
+
+    void placePendingSlices() throws IOException
+    {
+        while (!pendingSlices.isEmpty())
+            placeSlices();
+    }
+
+    /**
+     * Selects the combination of pending slices with the largest total height
+     * fitting into the given free space, each slice but the first also requiring
+     * the gap. This is an exhaustive search over the window pruned by the height
+     * still available.
+     */
+    List<Slice> selectSlices(float freeSpace)
+    {
+        List<Slice> candidates = new ArrayList<>(pendingSlices);
+        candidates.sort((a, b) -> Float.compare(b.height, a.height));
+        int size = candidates.size();
+        float[] remainingHeight = new float[size + 1];
+        for (int i = size - 1; i >= 0; i--)
+            remainingHeight[i] = remainingHeight[i + 1] + candidates.get(i).height;
+
+        boolean[] current = new boolean[size];
+        boolean[] best = new boolean[size];
+        // space check as in the source order layout: height < free space, then subtract height and gap
+        float bestHeight = search(candidates, remainingHeight, 0, freeSpace + gap, 0, current, best, 0);
+
+        List<Slice> selection = new ArrayList<>();
+        if (bestHeight > 0)
+        {
+            for (int i = 0; i < size; i++)
+                if (best[i])
+                    selection.add(candidates.get(i));
+        }
+        return selection;
+    }
+
+    float search(List<Slice> candidates, float[] remainingHeight, int index, float freeSpace, float height,
+            boolean[] current, boolean[] best, float bestHeight)
+    {
+        if (height > bestHeight)
+        {
+            bestHeight = height;
+            System.arraycopy(current, 0, best, 0, current.length);
+        }
+        if (index == candidates.size() || height + remainingHeight[index] <= bestHeight)
+            return bestHeight;
+
+        Slice slice = candidates.get(index);
+        if (slice.height + gap < freeSpace)
+        {
+            current[index] = true;
+            bestHeight = search(candidates, remainingHeight, index + 1, freeSpace - slice.height - gap, height + slice.height, current, best, bestHeight);
+            current[index] = false;
+        }
+        return search(candidates, remainingHeight, index + 1, freeSpace, height, current, best, bestHeight);
+    }
+
+    /**
+     * A piece of a source page to place as a whole.
+     */
+    static class Slice
+    {
+        Slice(PDFormXObject form, PDRectangle pageSizeToImport, float top, float height, int index)
+        {
+            this.form = form;
+            this.pageSizeToImport = pageSizeToImport;
+            this.top = top;
+            this.height = height;
+            this.index = index;
+        }
+
+        final PDFormXObject form;
+        final PDRectangle pageSizeToImport;
+        final float top;
+        final float height;
+        final int index;
+    }
+
     PDDocument document = null;
     PDPage currentPage = null;
     PDPageContentStream currentContents = null;
     float yPosition = 0; 
 
+    boolean internImportedObjects = false;
+    ObjectInterner objectInterner = null;
+    boolean keepSourceOrder = true;
+    int lookaheadWindow = 8;
+    final List<Slice> pendingSlices = new ArrayList<>();
+    int sliceCount = 0;
+
     final PDRectangle pageSize;
     final float topMargin;
     final float bottomMargin;
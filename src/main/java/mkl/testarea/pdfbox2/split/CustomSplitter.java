@@ -1,8 +1,22 @@
 package mkl.testarea.pdfbox2.split;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 import org.apache.pdfbox.multipdf.Splitter;
+import org.apache.pdfbox.pdmodel.PDDocument;
 
 /**
  * <a href="https://stackoverflow.com/questions/58345483/how-to-separate-pdf-based-on-given-intervals">
@@ -11,6 +25,13 @@ import org.apache.pdfbox.multipdf.Splitter;
  * <p>
  * This custom {@link Splitter} splits at the given page numbers.
  * </p>
+ * <p>
+ * Instead of returning all parts at once like {@link #split(PDDocument)}, the method
+ * {@link #split(PDDocument, PartSink, int)} hands each part on as soon as it is complete.
+ * As the parts share objects with the source document, a finished part is serialized
+ * on the splitting thread, but writing the serialized part to its target is done
+ * by a bounded pool of worker threads while the next part is assembled.
+ * </p>
  * @author mkl
  */
 public class CustomSplitter extends Splitter {
@@ -23,5 +44,157 @@ public class CustomSplitter extends Splitter {
         return Arrays.binarySearch(splitIndices, pageNumber) >= 0;
     }
 
+    /**
+     * Target for the parts of {@link CustomSplitter#split(PDDocument, PartSink, int)}.
+     * The returned stream is closed after the part has been written to it. This
+     * method is called by the worker threads, so implementations must be thread safe.
+     */
+    public interface PartSink {
+        OutputStream openPart(int partIndex) throws IOException;
+    }
+
+    /**
+     * @return a {@link PartSink} writing the parts into files in the given folder,
+     * named by formatting the given name format with the part index.
+     */
+    public static PartSink toFiles(File folder, String nameFormat) {
+        return partIndex -> new FileOutputStream(new File(folder, String.format(nameFormat, partIndex)));
+    }
+
+    /**
+     * <p>
+     * This method splits the given document and writes each part to the given
+     * sink as soon as it is complete. At most <code>parallelism</code> serialized
+     * parts are in flight at any time; if that many parts are still being written,
+     * splitting waits. Each part document is closed right after serialization,
+     * and a part still being assembled when splitting fails is closed, too.
+     * </p>
+     *
+     * @return the number of parts.
+     */
+    public int split(PDDocument document, PartSink partSink, int parallelism) throws IOException {
+        if (parallelism < 1)
+            throw new IllegalArgumentException(String.format("Parallelism must be positive; value: %s.", parallelism));
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            this.partSink = partSink;
+            this.executor = executor;
+            this.inFlight = new Semaphore(parallelism);
+            this.partCount = 0;
+            this.writes = new ArrayList<>();
+
+            this.currentPart = null;
+
+            split(document);
+            if (currentPart != null) {
+                PDDocument lastPart = currentPart;
+                currentPart = null;
+                handOff(lastPart);
+            }
+
+            for (Future<?> write : writes) {
+                get(write);
+            }
+            return partCount;
+        } finally {
+            PDDocument openPart = currentPart;
+            this.partSink = null;
+            this.executor = null;
+            this.inFlight = null;
+            this.writes = null;
+            this.currentPart = null;
+            executor.shutdownNow();
+            if (openPart != null)
+                openPart.close();
+        }
+    }
+
+    @Override
+    protected PDDocument createNewDocument() throws IOException {
+        if (partSink != null && currentPart != null) {
+            PDDocument finishedPart = currentPart;
+            currentPart = null;
+            handOff(finishedPart);
+        }
+        currentPart = super.createNewDocument();
+        return currentPart;
+    }
+
+    /**
+     * Serializes and closes the given finished part and schedules writing it.
+     */
+    void handOff(PDDocument part) throws IOException {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            part.close();
+            Thread.currentThread().interrupt();
+            InterruptedIOException interruptedIOException = new InterruptedIOException("Interrupted while waiting for part writers.");
+            interruptedIOException.initCause(e);
+            throw interruptedIOException;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            part.save(bytes);
+        } catch (IOException | RuntimeException e) {
+            inFlight.release();
+            throw e;
+        } finally {
+            part.close();
+        }
+
+        int partIndex = partCount++;
+        writes.add(executor.submit(() -> {
+            try (   OutputStream outputStream = partSink.openPart(partIndex)    ) {
+                bytes.writeTo(outputStream);
+            } finally {
+                inFlight.release();
+            }
+            return null;
+        }));
+        checkFinishedWrites();
+    }
+
+    /**
+     * Fails early if a write already has failed, and forgets successful writes.
+     */
+    void checkFinishedWrites() throws IOException {
+        for (int i = writes.size() - 1; i >= 0; i--) {
+            Future<?> write = writes.get(i);
+            if (write.isDone()) {
+                get(write);
+                writes.remove(i);
+            }
+        }
+    }
+
+    static void get(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interruptedIOException = new InterruptedIOException("Interrupted while waiting for part writers.");
+            interruptedIOException.initCause(e);
+            throw interruptedIOException;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
     final int[] splitIndices;
+
+    PartSink partSink = null;
+    ExecutorService executor = null;
+    Semaphore inFlight = null;
+    List<Future<?>> writes = null;
+    int partCount = 0;
+    PDDocument currentPart = null;
 }
@@ -0,0 +1,177 @@
+package mkl.testarea.pdfbox2.split;
+
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.pdfbox.multipdf.Splitter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.text.PDFTextStripperByArea;
+
+/**
+ * <a href="https://stackoverflow.com/questions/58345483/how-to-separate-pdf-based-on-given-intervals">
+ * How to separate pdf based on given intervals
+ * </a>
+ * <p>
+ * This {@link Splitter} does not need precomputed split page numbers like
+ * the {@link CustomSplitter} but starts a new part at each page for which
+ * a {@link SplitPredicate} holds. The predicate is evaluated on the text of
+ * named page regions which is extracted during the same page traversal that
+ * builds the parts, so no separate text extraction pass over the document
+ * is necessary.
+ * </p>
+ * <p>
+ * If no region has been added, the whole page is extracted as region {@link #PAGE}.
+ * As a subclass of {@link CustomSplitter} this splitter also supports writing
+ * the parts while splitting, see {@link #split(PDDocument, PartSink, int)}.
+ * </p>
+ * @author mkl
+ */
+public class PredicateSplitter extends CustomSplitter {
+    /**
+     * The name of the region used if no other region has been added.
+     */
+    public final static String PAGE = "page";
+
+    /**
+     * Decides whether a new part shall start at a page. It is not asked for
+     * the first page which always starts a part.
+     */
+    public interface SplitPredicate {
+        /**
+         * @param page the text data of the current page
+         * @param partStart the text data of the first page of the current part
+         */
+        boolean startsPart(PageText page, PageText partStart);
+    }
+
+    /**
+     * @return a predicate starting a new part at each page with a match
+     * of the given pattern in the text of the given region.
+     */
+    public static SplitPredicate whereMatches(String region, Pattern pattern) {
+        return (page, partStart) -> pattern.matcher(page.getText(region)).find();
+    }
+
+    /**
+     * @return a predicate starting a new part at each page with a match of
+     * the given pattern in the text of the given region which differs from
+     * the match on the first page of the current part, e.g. at each change
+     * of a customer number. If the pattern has a capturing group, the first
+     * group is compared, otherwise the whole match. Pages without a match
+     * belong to the current part.
+     */
+    public static SplitPredicate whereChanges(String region, Pattern pattern) {
+        return (page, partStart) -> {
+            String value = page.find(region, pattern);
+            return value != null && !value.equals(partStart.find(region, pattern));
+        };
+    }
+
+    public PredicateSplitter(SplitPredicate splitPredicate) {
+        super(new int[0]);
+        this.splitPredicate = splitPredicate;
+    }
+
+    /**
+     * Adds a region to extract the text of for the {@link SplitPredicate}.
+     * The rectangle is given in the coordinates of {@link PDFTextStripperByArea},
+     * i.e. with the origin in the upper left corner of the page.
+     */
+    public void addRegion(String name, Rectangle2D rectangle) {
+        regions.put(name, rectangle);
+    }
+
+    @Override
+    public List<PDDocument> split(PDDocument document) throws IOException {
+        partStart = null;
+        startsPart = false;
+        stripper = new PDFTextStripperByArea();
+        stripper.setSortByPosition(true);
+        if (regions.isEmpty()) {
+            // covers every page
+            stripper.addRegion(PAGE, new Rectangle2D.Float(-100000, -100000, 200000, 200000));
+        } else {
+            for (Map.Entry<String, Rectangle2D> entry : regions.entrySet())
+                stripper.addRegion(entry.getKey(), entry.getValue());
+        }
+        try {
+            return super.split(document);
+        } finally {
+            stripper = null;
+            partStart = null;
+        }
+    }
+
+    @Override
+    protected void processPage(PDPage page) throws IOException {
+        stripper.extractRegions(page);
+        Map<String, String> texts = new HashMap<>();
+        for (String region : stripper.getRegions())
+            texts.put(region, stripper.getTextForRegion(region));
+        PageText pageText = new PageText(page, texts);
+
+        startsPart = partStart == null || splitPredicate.startsPart(pageText, partStart);
+        if (startsPart)
+            partStart = pageText;
+        super.processPage(page);
+    }
+
+    @Override
+    protected boolean splitAtPage(int pageNumber) {
+        return startsPart;
+    }
+
+    /**
+     * The text data of a page the {@link SplitPredicate} decides on.
+     */
+    public static class PageText {
+        PageText(PDPage page, Map<String, String> texts) {
+            this.page = page;
+            this.texts = texts;
+        }
+
+        public PDPage getPage() {
+            return page;
+        }
+
+        /**
+         * @return the text of the given region.
+         */
+        public String getText(String region) {
+            String text = texts.get(region);
+            if (text == null)
+                throw new IllegalArgumentException(String.format("Unknown region: %s.", region));
+            return text;
+        }
+
+        /**
+         * @return the first capturing group of the first match of the given pattern
+         * in the text of the given region, the whole match if the pattern has no
+         * group, or <code>null</code> if there is no match.
+         */
+        public String find(String region, Pattern pattern) {
+            Matcher matcher = pattern.matcher(getText(region));
+            if (!matcher.find())
+                return null;
+            return Objects.toString(matcher.groupCount() > 0 ? matcher.group(1) : matcher.group(), "");
+        }
+
+        final PDPage page;
+        final Map<String, String> texts;
+    }
+
+    final SplitPredicate splitPredicate;
+    final Map<String, Rectangle2D> regions = new LinkedHashMap<>();
+
+    PDFTextStripperByArea stripper = null;
+    PageText partStart = null;
+    boolean startsPart = false;
+}
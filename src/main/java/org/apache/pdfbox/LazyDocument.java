@@ -0,0 +1,214 @@
+package org.apache.pdfbox;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A document of which initially only the cross references, the trailer, and
+ * the catalog are parsed, see {@link Loader#loadPDFLazily(File, org.apache.pdfbox.io.MemoryUsageSetting)}.
+ * <p>
+ * The PDFBox 2 {@link PDFParser} parses all objects reachable from the catalog
+ * before returning the document, and its indirect objects cannot resolve
+ * themselves on demand. Thus, this class does not expose a general
+ * {@link PDDocument} but only the accessors below which parse exactly the
+ * objects they need: {@link #getNumberOfPages()} only the page tree root,
+ * {@link #getPage(int)} the page tree nodes on the way to the page and
+ * the page with its resources and contents, and {@link #getAcroForm()}
+ * the form with its fields and widgets. References from annotations to
+ * their page (<b>P</b>) and from the requested page to its parent are not
+ * followed when parsing a page or the form. Furthermore, any other page or
+ * page tree node reached, e.g. via a link destination, a <b>GoTo</b> action,
+ * or an article bead, is parsed as a leaf without its entries, so a page with
+ * internal links or a form with widget actions does not pull in the pages they
+ * point to.
+ * </p>
+ */
+public class LazyDocument implements Closeable {
+    LazyDocument(RandomAccessRead source, ScratchFile scratchFile) throws IOException {
+        parser = new LazyParser(source, scratchFile);
+        parser.parse();
+        document = parser.getPDDocument();
+    }
+
+    public int getNumberOfPages() throws IOException {
+        COSNumber count = asNumber(parser.resolve(getPageTreeRoot().getItem(COSName.COUNT)));
+        return count != null ? count.intValue() : 0;
+    }
+
+    /**
+     * @param index the zero based index of the page
+     */
+    public PDPage getPage(int index) throws IOException {
+        int remaining = index;
+        if (remaining < 0 || remaining >= getNumberOfPages())
+            throw new IndexOutOfBoundsException("Index out of bounds: " + index);
+
+        List<COSDictionary> ancestors = new ArrayList<>();
+        COSDictionary node = getPageTreeRoot();
+        while (isPageTreeNode(node)) {
+            ancestors.add(node);
+            COSBase kids = parser.resolve(node.getItem(COSName.KIDS));
+            if (!(kids instanceof COSArray))
+                throw new IOException("Page tree node without kids array");
+            COSDictionary next = null;
+            for (COSBase kid : (COSArray) kids) {
+                COSBase kidObject = parser.resolve(kid);
+                if (!(kidObject instanceof COSDictionary))
+                    continue;
+                COSDictionary kidDictionary = (COSDictionary) kidObject;
+                int count = 1;
+                if (isPageTreeNode(kidDictionary)) {
+                    COSNumber kidCount = asNumber(parser.resolve(kidDictionary.getItem(COSName.COUNT)));
+                    count = kidCount != null ? kidCount.intValue() : 0;
+                }
+                if (remaining < count) {
+                    next = kidDictionary;
+                    break;
+                }
+                remaining -= count;
+            }
+            if (next == null)
+                throw new IOException(String.format("Page tree does not contain page %s.", index));
+            node = next;
+        }
+
+        Set<COSBase> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        parser.resolveDeep(node, visited);
+        for (COSDictionary ancestor : ancestors) {
+            for (COSName key : INHERITABLE) {
+                if (ancestor.containsKey(key))
+                    parser.resolveDeep(ancestor.getItem(key), visited);
+            }
+        }
+        return new PDPage(node);
+    }
+
+    /**
+     * @return the interactive form or <code>null</code> if there is none.
+     */
+    public PDAcroForm getAcroForm() throws IOException {
+        COSDictionary root = document.getDocumentCatalog().getCOSObject();
+        parser.resolveDeep(root.getItem(COSName.ACRO_FORM), Collections.newSetFromMap(new IdentityHashMap<>()));
+        return document.getDocumentCatalog().getAcroForm();
+    }
+
+    @Override
+    public void close() throws IOException {
+        document.close();
+    }
+
+    COSDictionary getPageTreeRoot() throws IOException {
+        COSDictionary root = document.getDocumentCatalog().getCOSObject();
+        COSBase pages = parser.resolve(root.getItem(COSName.PAGES));
+        if (!(pages instanceof COSDictionary))
+            throw new IOException("Page tree root must be a dictionary");
+        return (COSDictionary) pages;
+    }
+
+    static boolean isPageTreeNode(COSDictionary node) {
+        return COSName.PAGES.equals(node.getCOSName(COSName.TYPE)) || node.containsKey(COSName.KIDS);
+    }
+
+    static COSNumber asNumber(COSBase base) {
+        return base instanceof COSNumber ? (COSNumber) base : null;
+    }
+
+    /**
+     * A {@link PDFParser} whose initial parse only parses the trailer and the
+     * catalog. Further objects are parsed on request.
+     */
+    static class LazyParser extends PDFParser {
+        LazyParser(RandomAccessRead source, ScratchFile scratchFile) throws IOException {
+            super(source, "", null, null, scratchFile);
+        }
+
+        @Override
+        protected void initialParse() throws IOException {
+            COSDictionary trailer = retrieveTrailer();
+            COSBase base = parseTrailerValuesDynamically(trailer);
+            if (!(base instanceof COSDictionary))
+                throw new IOException("Expected root dictionary, but got this: " + base);
+            COSDictionary root = (COSDictionary) base;
+            // in some pdfs the type value "Catalog" is missing in the root object
+            if (isLenient() && !root.containsKey(COSName.TYPE))
+                root.setItem(COSName.TYPE, COSName.CATALOG);
+            document.setDecrypted();
+            initialParseDone = true;
+        }
+
+        /**
+         * Parses the given object if it is an indirect object not parsed yet.
+         * @return the direct object
+         */
+        COSBase resolve(COSBase base) throws IOException {
+            if (base instanceof COSObject)
+                return parseObjectDynamically((COSObject) base, false);
+            return base;
+        }
+
+        /**
+         * Parses the object graph of the given object except objects already
+         * visited, the parent of the given object, and the pages of annotations.
+         * Pages and page tree nodes other than the given object are leaves.
+         */
+        void resolveDeep(COSBase base, Set<COSBase> visited) throws IOException {
+            Deque<COSBase> pending = new ArrayDeque<>();
+            if (base != null)
+                pending.push(base);
+            COSBase start = null;
+            while (!pending.isEmpty()) {
+                COSBase object = resolve(pending.pop());
+                if (start == null)
+                    start = object;
+                if (object == null || !visited.add(object))
+                    continue;
+                if (object instanceof COSArray) {
+                    for (COSBase item : (COSArray) object) {
+                        if (item != null)
+                            pending.push(item);
+                    }
+                } else if (object instanceof COSDictionary) {
+                    COSDictionary dictionary = (COSDictionary) object;
+                    COSName type = dictionary.getCOSName(COSName.TYPE);
+                    boolean pageTreeNode = COSName.PAGE.equals(type) || isPageTreeNode(dictionary);
+                    if (pageTreeNode && object != start)
+                        continue;
+                    boolean annotation = dictionary.containsKey(COSName.SUBTYPE) && dictionary.containsKey(COSName.RECT);
+                    for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet()) {
+                        if (pageTreeNode && COSName.PARENT.equals(entry.getKey()))
+                            continue;
+                        if (annotation && COSName.P.equals(entry.getKey()))
+                            continue;
+                        if (entry.getValue() != null)
+                            pending.push(entry.getValue());
+                    }
+                }
+            }
+        }
+    }
+
+    final static COSName[] INHERITABLE = {COSName.RESOURCES, COSName.MEDIA_BOX, COSName.CROP_BOX, COSName.ROTATE};
+
+    final LazyParser parser;
+    final PDDocument document;
+}
@@ -1,12 +1,24 @@
 package org.apache.pdfbox;
 
+import org.apache.pdfbox.io.IOUtils;
 import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessBufferedFileInputStream;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdfparser.PDFParser;
 import org.apache.pdfbox.pdmodel.PDDocument;
 
 import java.io.*;
 
 /**
  * Utility methods to load different types of documents
+ * <p>
+ * The {@link MemoryUsageSetting} overloads determine where stream data of
+ * the loaded document is buffered, e.g. {@link MemoryUsageSetting#setupMainMemoryOnly()},
+ * {@link MemoryUsageSetting#setupMixed(long)}, or {@link MemoryUsageSetting#setupTempFileOnly()};
+ * the other overloads buffer in main memory only. Files are read by random
+ * access, not copied into a buffer first.
+ * </p>
  */
 public class Loader {
     private Loader() {
@@ -15,12 +27,62 @@ public class Loader {
         return PDDocument.load(inputStream);
     }
     public static PDDocument loadPDF(File inputFile) throws IOException {
-        return PDDocument.load(new FileInputStream(inputFile));
+        return PDDocument.load(inputFile);
     }
     public static PDDocument loadPDF(byte[] input) throws IOException {
-        return PDDocument.load(new ByteArrayInputStream(input));
+        return PDDocument.load(input);
     }
     public static PDDocument loadPDF(InputStream input,MemoryUsageSetting memoryUsageSetting) throws IOException {
         return PDDocument.load(input,memoryUsageSetting);
     }
-}
\ No newline at end of file
+    public static PDDocument loadPDF(File inputFile,MemoryUsageSetting memoryUsageSetting) throws IOException {
+        return PDDocument.load(inputFile,memoryUsageSetting);
+    }
+    public static PDDocument loadPDF(byte[] input,MemoryUsageSetting memoryUsageSetting) throws IOException {
+        return PDDocument.load(input,"",null,null,memoryUsageSetting);
+    }
+    /**
+     * Loads the given file read-only via a memory mapping, e.g. for large archived
+     * documents. The file content is not copied to the Java heap, so only the parsed
+     * objects and the buffered stream data as given by the memory usage setting use it.
+     * The file must not be changed while the document is open.
+     */
+    public static PDDocument loadPDFMapped(File inputFile,MemoryUsageSetting memoryUsageSetting) throws IOException {
+        RandomAccessRead source = new MappedRandomAccessRead(inputFile);
+        try {
+            ScratchFile scratchFile = new ScratchFile(memoryUsageSetting);
+            try {
+                PDFParser parser = new PDFParser(source, "", null, null, scratchFile);
+                parser.parse();
+                return parser.getPDDocument();
+            } catch (IOException ioe) {
+                IOUtils.closeQuietly(scratchFile);
+                throw ioe;
+            }
+        } catch (IOException ioe) {
+            IOUtils.closeQuietly(source);
+            throw ioe;
+        }
+    }
+    /**
+     * Loads the given file lazily: only the cross references, the trailer, and the
+     * catalog are parsed initially, further objects only when requested via the
+     * {@link LazyDocument} accessors. Use this for jobs only requiring the page count,
+     * a single page, or the interactive form of large documents.
+     */
+    public static LazyDocument loadPDFLazily(File inputFile,MemoryUsageSetting memoryUsageSetting) throws IOException {
+        RandomAccessRead source = new RandomAccessBufferedFileInputStream(inputFile);
+        try {
+            ScratchFile scratchFile = new ScratchFile(memoryUsageSetting);
+            try {
+                return new LazyDocument(source, scratchFile);
+            } catch (IOException ioe) {
+                IOUtils.closeQuietly(scratchFile);
+                throw ioe;
+            }
+        } catch (IOException ioe) {
+            IOUtils.closeQuietly(source);
+            throw ioe;
+        }
+    }
+}
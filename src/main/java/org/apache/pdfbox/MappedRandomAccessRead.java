@@ -0,0 +1,162 @@
+package org.apache.pdfbox;
+
+import org.apache.pdfbox.io.RandomAccessRead;
+
+import java.io.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only {@link RandomAccessRead} on a memory mapped file. The file is
+ * mapped in chunks of 1 GB, so files beyond 2 GB are supported. The content
+ * is paged in by the operating system on access and does not count against
+ * the Java heap. As Java 8 offers no way to explicitly unmap a file, the
+ * mapping is released when the buffers are garbage collected after closing.
+ */
+class MappedRandomAccessRead implements RandomAccessRead {
+    final static int CHUNK_BITS = 30;
+
+    MappedRandomAccessRead(File file) throws IOException {
+        this(file, CHUNK_BITS);
+    }
+
+    /**
+     * @param chunkBits the binary logarithm of the chunk size, e.g. small for tests
+     */
+    MappedRandomAccessRead(File file, int chunkBits) throws IOException {
+        if (chunkBits < 1 || chunkBits > CHUNK_BITS)
+            throw new IllegalArgumentException(String.format("Chunk bits must be between 1 and %s; value: %s.", CHUNK_BITS, chunkBits));
+        this.chunkBits = chunkBits;
+        this.chunkSize = 1 << chunkBits;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            length = channel.size();
+            long count = (length + chunkSize - 1) >>> chunkBits;
+            if (count > Integer.MAX_VALUE)
+                throw new IOException(String.format("File too large for chunks of %s bytes; length: %s.", chunkSize, length));
+            chunks = new ByteBuffer[(int) count];
+            for (int i = 0; i < count; i++) {
+                long start = (long) i << chunkBits;
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, length - start));
+                chunks[i] = chunk;
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        if (position >= length)
+            return -1;
+        int b = chunks[(int) (position >>> chunkBits)].get((int) (position & (chunkSize - 1)));
+        position++;
+        return b & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        if (position >= length)
+            return -1;
+        int total = 0;
+        while (len > 0 && position < length) {
+            ByteBuffer chunk = chunks[(int) (position >>> chunkBits)];
+            int offset = (int) (position & (chunkSize - 1));
+            int count = Math.min(len, chunk.limit() - offset);
+            // cast, as Java 9+ compilers otherwise link the covariant ByteBuffer.position(int) missing in Java 8
+            ((Buffer) chunk).position(offset);
+            chunk.get(b, off, count);
+            position += count;
+            off += count;
+            len -= count;
+            total += count;
+        }
+        return total;
+    }
+
+    @Override
+    public long getPosition() throws IOException {
+        checkClosed();
+        return position;
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        checkClosed();
+        if (position < 0)
+            throw new IOException("Invalid position " + position);
+        this.position = position;
+    }
+
+    @Override
+    public long length() throws IOException {
+        checkClosed();
+        return length;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return chunks == null;
+    }
+
+    @Override
+    public int peek() throws IOException {
+        int result = read();
+        if (result != -1)
+            rewind(1);
+        return result;
+    }
+
+    @Override
+    public void rewind(int bytes) throws IOException {
+        seek(getPosition() - bytes);
+    }
+
+    @Override
+    public byte[] readFully(int length) throws IOException {
+        byte[] result = new byte[length];
+        int off = 0;
+        while (off < length) {
+            int count = read(result, off, length - off);
+            if (count <= 0)
+                throw new EOFException("Premature end of buffer reached");
+            off += count;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isEOF() throws IOException {
+        checkClosed();
+        return position >= length;
+    }
+
+    @Override
+    public int available() throws IOException {
+        checkClosed();
+        return (int) Math.max(0, Math.min(length - position, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public void close() throws IOException {
+        chunks = null;
+    }
+
+    void checkClosed() throws IOException {
+        if (chunks == null)
+            throw new IOException("RandomAccessRead already closed");
+    }
+
+    final int chunkBits;
+    final int chunkSize;
+    final long length;
+    ByteBuffer[] chunks;
+    long position = 0;
+}
@@ -8,20 +8,37 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
 
 import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.contentstream.operator.Operator;
 import org.apache.pdfbox.cos.COSBase;
 import org.apache.pdfbox.cos.COSFloat;
 import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.filter.Filter;
+import org.apache.pdfbox.io.IOUtils;
 import org.apache.pdfbox.pdfwriter.ContentStreamWriter;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.common.PDStream;
 import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
+import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.pdfbox.util.Matrix;
 import org.apache.pdfbox.util.Vector;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -62,6 +79,47 @@ public class EditPageContent {
         }
     }
 
+    /**
+     * Test that identity editing keeps the original content streams, also if
+     * the operands are copied into a new list, while writing new operand
+     * objects counts as change.
+     */
+    @Test
+    public void testIdentityKeepsContentsInput() throws IOException {
+        try (   InputStream resource = getClass().getResourceAsStream("input.pdf");
+                PDDocument document = Loader.loadPDF(resource)) {
+            for (PDPage page : document.getDocumentCatalog().getPages()) {
+                COSBase contents = page.getCOSObject().getItem(COSName.CONTENTS);
+                PdfContentStreamEditor identity = new PdfContentStreamEditor(document, page);
+                identity.processPage(page);
+                Assert.assertFalse("Identity changed", identity.isChanged());
+                Assert.assertSame("Identity contents", contents, page.getCOSObject().getItem(COSName.CONTENTS));
+
+                PdfContentStreamEditor copier = new PdfContentStreamEditor(document, page) {
+                    @Override
+                    protected void write(ContentStreamWriter contentStreamWriter, Operator operator, List<COSBase> operands) throws IOException {
+                        super.write(contentStreamWriter, operator, new ArrayList<>(operands));
+                    }
+                };
+                copier.processPage(page);
+                Assert.assertFalse("Copier changed", copier.isChanged());
+                Assert.assertSame("Copier contents", contents, page.getCOSObject().getItem(COSName.CONTENTS));
+
+                PdfContentStreamEditor enlarger = new PdfContentStreamEditor(document, page) {
+                    @Override
+                    protected void write(ContentStreamWriter contentStreamWriter, Operator operator, List<COSBase> operands) throws IOException {
+                        if ("Tf".equals(operator.getName()) && operands.size() == 2 && operands.get(1) instanceof COSNumber)
+                            operands = Arrays.asList(operands.get(0), new COSFloat(2 * ((COSNumber)operands.get(1)).floatValue()));
+                        super.write(contentStreamWriter, operator, operands);
+                    }
+                };
+                enlarger.processPage(page);
+                Assert.assertTrue("Enlarger changed", enlarger.isChanged());
+                Assert.assertNotSame("Enlarger contents", contents, page.getCOSObject().getItem(COSName.CONTENTS));
+            }
+        }
+    }
+
     /**
      * <a href="http://stackoverflow.com/questions/38498431/how-to-remove-filtered-content-from-a-pdf-with-itext">
      * How to remove filtered content from a PDF with iText
@@ -106,6 +164,199 @@ public class EditPageContent {
         }
     }
 
+    /**
+     * <a href="http://stackoverflow.com/questions/38498431/how-to-remove-filtered-content-from-a-pdf-with-itext">
+     * How to remove filtered content from a PDF with iText
+     * </a>
+     * <br/>
+     * <a href="https://1drv.ms/b/s!AmNST-TRoPSemi2k0UnGFsjQM1Yt">
+     * document.pdf
+     * </a>
+     * <p>
+     * This test shows how to remove text filtered by actual font size with the
+     * lightweight {@link PdfContentStreamRewriter} which only tracks font and
+     * matrices, and checks that the remaining text equals the one of the
+     * {@link PdfContentStreamEditor} based {@link #testRemoveBigTextDocument()}.
+     * </p>
+     */
+    @Test
+    public void testRemoveBigTextDocumentRewriter() throws IOException {
+        String editorText;
+        try (   InputStream resource = getClass().getResourceAsStream("document.pdf");
+                PDDocument document = Loader.loadPDF(resource)) {
+            for (PDPage page : document.getDocumentCatalog().getPages()) {
+                bigTextRemover(document, page).processPage(page);
+            }
+            editorText = new PDFTextStripper().getText(document);
+        }
+
+        try (   InputStream resource = getClass().getResourceAsStream("document.pdf");
+                PDDocument document = Loader.loadPDF(resource)) {
+            PdfContentStreamRewriter rewriter = new PdfContentStreamRewriter(document, EnumSet.of(PdfContentStreamRewriter.TrackedState.FONT,
+                    PdfContentStreamRewriter.TrackedState.TEXT_MATRIX, PdfContentStreamRewriter.TrackedState.TRANSFORMATION_MATRIX)) {
+                @Override
+                protected void write(ContentStreamWriter contentStreamWriter, Operator operator, List<COSBase> operands) throws IOException {
+                    if (TEXT_SHOWING_OPERATORS.contains(operator.getName()) && getEffectiveFontSize() > 100)
+                        return;
+
+                    super.write(contentStreamWriter, operator, operands);
+                }
+
+                final List<String> TEXT_SHOWING_OPERATORS = Arrays.asList("Tj", "'", "\"", "TJ");
+            };
+            for (PDPage page : document.getDocumentCatalog().getPages()) {
+                rewriter.processPage(page);
+            }
+            document.save(new File(RESULT_FOLDER, "document-noBigText-rewriter.pdf"));
+            Assert.assertEquals("Remaining text", editorText, new PDFTextStripper().getText(document));
+        }
+    }
+
+    /**
+     * <a href="https://stackoverflow.com/questions/58475104/filter-out-all-text-above-a-certain-font-size-from-pdf">
+     * Filter out all text above a certain font size from PDF
+     * </a>
+     * <p>
+     * This test applies the big text removal of {@link #testRemoveBigTextDocument()}
+     * using the {@link ParallelPageEditor} and checks that the result has the same
+     * text as the sequential edit and that the new page contents do not depend on
+     * the parallelism.
+     * </p>
+     */
+    @Test
+    public void testRemoveBigTextDocumentParallel() throws IOException {
+        ParallelPageEditor.EditorFactory editorFactory = EditPageContent::bigTextRemover;
+
+        String sequentialText;
+        try (   InputStream resource = getClass().getResourceAsStream("document.pdf");
+                PDDocument document = Loader.loadPDF(resource)) {
+            for (PDPage page : document.getDocumentCatalog().getPages()) {
+                editorFactory.createEditor(document, page).processPage(page);
+            }
+            sequentialText = new PDFTextStripper().getText(document);
+        }
+
+        List<byte[]> singleContents = new ArrayList<>();
+        try (   InputStream resource = getClass().getResourceAsStream("document.pdf");
+                PDDocument document = Loader.loadPDF(resource)) {
+            new ParallelPageEditor(editorFactory, 1).edit(document);
+            for (PDPage page : document.getDocumentCatalog().getPages()) {
+                singleContents.add(IOUtils.toByteArray(page.getContents()));
+            }
+        }
+
+        try (   InputStream resource = getClass().getResourceAsStream("document.pdf");
+                PDDocument document = Loader.loadPDF(resource)) {
+            new ParallelPageEditor(editorFactory, 4).edit(document);
+            document.save(new File(RESULT_FOLDER, "document-noBigText-parallel.pdf"));
+            Assert.assertEquals("Remaining text", sequentialText, new PDFTextStripper().getText(document));
+            int pageIndex = 0;
+            for (PDPage page : document.getDocumentCatalog().getPages()) {
+                Assert.assertArrayEquals("Content of page " + pageIndex, singleContents.get(pageIndex++),
+                        IOUtils.toByteArray(page.getContents()));
+            }
+        }
+    }
+
+    /**
+     * <a href="https://stackoverflow.com/questions/58475104/filter-out-all-text-above-a-certain-font-size-from-pdf">
+     * Filter out all text above a certain font size from PDF
+     * </a>
+     * <p>
+     * This test applies the big text removal of {@link #testRemoveBigTextDocument()}
+     * with the different {@link ContentStreamEncoding} policies and compares the
+     * resulting text, content stream sizes, and editing times.
+     * </p>
+     */
+    @Test
+    public void testRemoveBigTextDocumentEncodings() throws IOException {
+        String expectedText = null;
+        long previousSize = Long.MAX_VALUE;
+        for (ContentStreamEncoding contentEncoding : Arrays.asList(ContentStreamEncoding.UNCOMPRESSED, ContentStreamEncoding.FASTEST,
+                ContentStreamEncoding.DEFAULT, ContentStreamEncoding.SMALLEST)) {
+            try (   InputStream resource = getClass().getResourceAsStream("document.pdf");
+                    PDDocument document = Loader.loadPDF(resource)) {
+                long start = System.nanoTime();
+                List<Boolean> changed = new ArrayList<>();
+                for (PDPage page : document.getDocumentCatalog().getPages()) {
+                    PdfContentStreamEditor editor = bigTextRemover(document, page);
+                    editor.setContentEncoding(contentEncoding);
+                    editor.processPage(page);
+                    changed.add(editor.isChanged());
+                }
+                long time = System.nanoTime() - start;
+                Assert.assertTrue("Pages changed", changed.contains(true));
+
+                long size = 0;
+                int pageIndex = 0;
+                for (PDPage page : document.getDocumentCatalog().getPages()) {
+                    boolean pageChanged = changed.get(pageIndex++);
+                    for (Iterator<PDStream> contentStreams = page.getContentStreams(); contentStreams.hasNext(); ) {
+                        COSStream contents = contentStreams.next().getCOSObject();
+                        if (pageChanged)
+                            Assert.assertEquals("Filter", contentEncoding.isCompressed() ? COSName.FLATE_DECODE : null, contents.getFilters());
+                        size += contents.getLength();
+                    }
+                }
+                System.out.printf("%s: %d bytes in %d ms\n", contentEncoding, size, time / 1000000);
+                Assert.assertTrue("Content size not increasing", size <= previousSize);
+                previousSize = size;
+
+                String text = new PDFTextStripper().getText(document);
+                if (expectedText == null)
+                    expectedText = text;
+                else
+                    Assert.assertEquals("Remaining text", expectedText, text);
+                document.save(new File(RESULT_FOLDER, "document-noBigText-" + (contentEncoding.isCompressed() ? "flate" + contentEncoding.getLevel() : "uncompressed") + ".pdf"));
+            }
+        }
+    }
+
+    /**
+     * This test checks that {@link ContentStreamEncoding#DEFAULT} honors the
+     * PDFBox deflate level system property at the time of encoding.
+     */
+    @Test
+    public void testDefaultEncodingLevel() {
+        String deflateLevel = System.getProperty(Filter.SYSPROP_DEFLATELEVEL);
+        try {
+            System.setProperty(Filter.SYSPROP_DEFLATELEVEL, "3");
+            Assert.assertEquals("Default level", 3, ContentStreamEncoding.DEFAULT.getLevel());
+            System.clearProperty(Filter.SYSPROP_DEFLATELEVEL);
+            Assert.assertEquals("Default level", Deflater.DEFAULT_COMPRESSION, ContentStreamEncoding.DEFAULT.getLevel());
+        } finally {
+            if (deflateLevel != null)
+                System.setProperty(Filter.SYSPROP_DEFLATELEVEL, deflateLevel);
+            else
+                System.clearProperty(Filter.SYSPROP_DEFLATELEVEL);
+        }
+    }
+
+    /**
+     * @return an editor removing text drawn with an effective font size above 100,
+     * like the one of {@link #testRemoveBigTextDocument()}.
+     */
+    static PdfContentStreamEditor bigTextRemover(PDDocument document, PDPage page) {
+        return new PdfContentStreamEditor(document, page) {
+            @Override
+            protected void write(ContentStreamWriter contentStreamWriter, Operator operator, List<COSBase> operands) throws IOException {
+                if (TEXT_SHOWING_OPERATORS.contains(operator.getName()))
+                {
+                    float fs = getGraphicsState().getTextState().getFontSize();
+                    Matrix matrix = getTextMatrix().multiply(getGraphicsState().getCurrentTransformationMatrix());
+                    Point2D.Float transformedFsVector = matrix.transformPoint(0, fs);
+                    Point2D.Float transformedOrigin = matrix.transformPoint(0, 0);
+                    if (transformedFsVector.distance(transformedOrigin) > 100)
+                        return;
+                }
+
+                super.write(contentStreamWriter, operator, operands);
+            }
+
+            final List<String> TEXT_SHOWING_OPERATORS = Arrays.asList("Tj", "'", "\"", "TJ");
+        };
+    }
+
     /**
      * <a href="https://stackoverflow.com/questions/59489717/extract-content-streamimages-text-and-graphics-with-in-a-bbox-and-place-it-b">
      * Extract content stream(Images, Text and graphics) with in a BBOX. And place it back in new PDF without loosing any style?
@@ -280,6 +531,93 @@ public class EditPageContent {
         }
     }
 
+    /**
+     * <a href="https://stackoverflow.com/questions/63338236/i-want-to-convert-pdf-to-image-but-i-only-want-single-output-image-which-contain">
+     * I Want to Convert PDF TO IMAGE but I only want single output image which contain all the images and Vector graphics only. I do not want text
+     * </a>
+     * <p>
+     * This test shows how to remove text also from form XObjects, here
+     * from a header form XObject with a nested logo form XObject shared
+     * by all pages. Each form XObject is edited only once and all pages
+     * share the edited copy.
+     * </p>
+     */
+    @Test
+    public void testRemoveTextInForms() throws IOException {
+        try (   PDDocument document = new PDDocument()  ) {
+            PDFormXObject logo = new PDFormXObject(document);
+            logo.setBBox(new PDRectangle(100, 20));
+            logo.setResources(new PDResources());
+            try (   PDPageContentStream canvas = new PDPageContentStream(document, new PDAppearanceStream(logo.getCOSObject()))  ) {
+                canvas.addRect(0, 0, 100, 20);
+                canvas.stroke();
+                canvas.beginText();
+                canvas.setFont(PDType1Font.HELVETICA_BOLD, 12);
+                canvas.newLineAtOffset(5, 5);
+                canvas.showText("Logo");
+                canvas.endText();
+            }
+            PDFormXObject header = new PDFormXObject(document);
+            header.setBBox(new PDRectangle(500, 40));
+            header.setResources(new PDResources());
+            try (   PDPageContentStream canvas = new PDPageContentStream(document, new PDAppearanceStream(header.getCOSObject()))  ) {
+                canvas.drawForm(logo);
+                canvas.beginText();
+                canvas.setFont(PDType1Font.HELVETICA, 12);
+                canvas.newLineAtOffset(150, 5);
+                canvas.showText("Header");
+                canvas.endText();
+            }
+            for (int i = 1; i <= 3; i++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (   PDPageContentStream canvas = new PDPageContentStream(document, page)  ) {
+                    canvas.saveGraphicsState();
+                    canvas.transform(Matrix.getTranslateInstance(50, 740));
+                    canvas.drawForm(header);
+                    canvas.restoreGraphicsState();
+                    canvas.beginText();
+                    canvas.setFont(PDType1Font.HELVETICA, 12);
+                    canvas.newLineAtOffset(50, 700);
+                    canvas.showText("Page " + i);
+                    canvas.endText();
+                }
+            }
+            Assert.assertEquals("Original text", "Logo Header\nPage 1\nLogo Header\nPage 2\nLogo Header\nPage 3\n",
+                    new PDFTextStripper().getText(document).replace("\r\n", "\n"));
+
+            Map<COSStream, PDFormXObject> editedForms = new HashMap<>();
+            for (PDPage page : document.getDocumentCatalog().getPages()) {
+                PdfContentStreamEditor editor = new PdfContentStreamEditor(document, page) {
+                    @Override
+                    protected void write(ContentStreamWriter contentStreamWriter, Operator operator, List<COSBase> operands) throws IOException {
+                        if (TEXT_SHOWING_OPERATORS.contains(operator.getName()))
+                            return;
+
+                        super.write(contentStreamWriter, operator, operands);
+                    }
+
+                    final List<String> TEXT_SHOWING_OPERATORS = Arrays.asList("Tj", "'", "\"", "TJ");
+                };
+                editor.setEditedForms(editedForms);
+                editor.processPage(page);
+            }
+            document.save(new File(RESULT_FOLDER, "forms-noText.pdf"));
+
+            Assert.assertEquals("Edited forms", 2, editedForms.size());
+            Assert.assertEquals("Remaining text", "", new PDFTextStripper().getText(document).trim());
+            PDFormXObject headerReplacement = editedForms.get(header.getCOSObject());
+            for (PDPage page : document.getDocumentCatalog().getPages()) {
+                for (COSName name : page.getResources().getXObjectNames()) {
+                    Assert.assertSame("Header replacement", headerReplacement.getCOSObject(), page.getResources().getXObject(name).getCOSObject());
+                }
+            }
+            for (COSName name : header.getResources().getXObjectNames()) {
+                Assert.assertSame("Original logo", logo.getCOSObject(), header.getResources().getXObject(name).getCOSObject());
+            }
+        }
+    }
+
     /**
      * <a href="https://stackoverflow.com/questions/63592078/replace-or-remove-text-from-pdf-with-pdfbox-in-java">
      * Replace or remove text from PDF with PDFbox in Java
@@ -3,9 +3,13 @@ package mkl.testarea.pdfbox2.extract;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -43,4 +47,87 @@ public class DetermineTextAndBackgroundColors {
         }
     }
 
+    /**
+     * <a href="https://stackoverflow.com/questions/54637141/background-color-is-incorrect-on-first-page-for-some-reason">
+     * Background color is incorrect on first page for some reason
+     * </a>
+     * <br/>
+     * <a href="https://drive.google.com/open?id=1LXOuGmk67hQRwLXi5GBx-5n3-CJ_NV7h">
+     * test.pdf
+     * </a> as "test3DmitryK.pdf".
+     * <p>
+     * This test retrieves the glyphs with text and background color as
+     * {@link GlyphRecord} instances instead of log lines.
+     * </p>
+     */
+    @Test
+    public void testPdfToTextInfoConverterRecords() throws IOException {
+        try (   InputStream resource = getClass().getResourceAsStream("test3DmitryK.pdf");
+                PDDocument pdDocument = Loader.loadPDF(resource)   ) {
+            List<GlyphRecord> records = new ArrayList<>();
+            PdfToTextInfoConverter pdfToTextInfoConverter = new PdfToTextInfoConverter(pdDocument);
+            pdfToTextInfoConverter.setGlyphConsumer(record -> records.add(record.copy()));
+            pdfToTextInfoConverter.stripPage(0, 300);
+
+            Assert.assertFalse("No glyph records", records.isEmpty());
+            int coinciding = 0;
+            for (GlyphRecord record : records) {
+                Assert.assertEquals("Page number", 1, record.getPageNumber());
+                if (record.getFillRgb() == record.getBackgroundRgb())
+                    coinciding++;
+            }
+            System.out.printf("%d glyphs, %d coinciding with the background color\n", records.size(), coinciding);
+        }
+    }
+
+    /**
+     * <a href="https://stackoverflow.com/questions/54637141/background-color-is-incorrect-on-first-page-for-some-reason">
+     * Background color is incorrect on first page for some reason
+     * </a>
+     * <br/>
+     * <a href="https://drive.google.com/file/d/1aPclyMppjBwgrPE7cWBmpkUqb1WlJ3W6/view?usp=sharing">
+     * test.pdf
+     * </a> as "test3DmitryK.pdf".
+     * <p>
+     * This test processes all pages in a single pass and checks the per page
+     * results against the glyph records of page by page processing. A page
+     * without contents is appended to check that it gets an empty result.
+     * </p>
+     */
+    @Test
+    public void testPdfToTextInfoConverterAllPages() throws IOException {
+        try (   InputStream resource = getClass().getResourceAsStream("test3DmitryK.pdf");
+                PDDocument pdDocument = Loader.loadPDF(resource)   ) {
+            pdDocument.addPage(new PDPage());
+            int pageCount = pdDocument.getNumberOfPages();
+            List<PdfToTextInfoConverter.PageResult> results = new ArrayList<>();
+            PdfToTextInfoConverter pdfToTextInfoConverter = new PdfToTextInfoConverter(pdDocument);
+            pdfToTextInfoConverter.stripPages(0, pageCount - 1, 300, results::add);
+
+            Assert.assertEquals("Page results", pageCount, results.size());
+            PdfToTextInfoConverter singlePageConverter = new PdfToTextInfoConverter(pdDocument);
+            for (int pageNum = 0; pageNum < pageCount; pageNum++) {
+                List<GlyphRecord> records = new ArrayList<>();
+                singlePageConverter.setGlyphConsumer(record -> records.add(record.copy()));
+                singlePageConverter.stripPage(pageNum, 300);
+                int coinciding = 0;
+                for (GlyphRecord record : records) {
+                    if (record.getFillRgb() == record.getBackgroundRgb())
+                        coinciding++;
+                }
+
+                PdfToTextInfoConverter.PageResult result = results.get(pageNum);
+                Assert.assertEquals("Page number", pageNum + 1, result.getPageNumber());
+                Assert.assertEquals("Glyph count", records.size(), result.getGlyphCount());
+                Assert.assertEquals("Coinciding glyphs", coinciding, result.getCoincidingGlyphs().size());
+                System.out.printf("Page %d: %d glyphs, %d coinciding with the background color\n", result.getPageNumber(), result.getGlyphCount(), result.getCoincidingGlyphs().size());
+            }
+            Assert.assertEquals("Glyphs on the page without contents", 0, results.get(pageCount - 1).getGlyphCount());
+
+            pdfToTextInfoConverter.setQuantizeCoordinates(true);
+            results.clear();
+            pdfToTextInfoConverter.stripPages(0, pageCount - 1, 300, results::add);
+            Assert.assertEquals("Quantized page results", pageCount, results.size());
+        }
+    }
 }
@@ -3,11 +3,15 @@ package mkl.testarea.pdfbox2.extract;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.nio.file.Files;
+import java.util.Locale;
 
 import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -51,4 +55,41 @@ public class ExtractColorText {
             System.out.println("<<<");
         }
     }
+
+    /**
+     * <a href="https://stackoverflow.com/questions/59031734/get-text-color-in-pdfbox">
+     * Get text color in PDFBox
+     * </a>
+     * <p>
+     * This test extracts the glyph colors of the sample as {@link GlyphRecord}
+     * instances in batched columns instead of formatted text and exports them as
+     * CSV. Each glyph of the formatted text output must have a record.
+     * </p>
+     */
+    @Test
+    public void testExtractColumnsFromFurzoSample() throws IOException {
+        try (   InputStream resource = getClass().getResourceAsStream("furzo Sample.pdf");
+                PDDocument document = Loader.loadPDF(resource);
+                PrintWriter csv = new PrintWriter(new File(RESULT_FOLDER, "furzo Sample.csv"), "UTF-8") ) {
+            csv.println("page,unicode,x,y,width,height,mode,fill,stroke");
+            int[] count = {0};
+            GlyphRecordColumns columns = new GlyphRecordColumns(100, batch -> {
+                for (int i = 0; i < batch.size(); i++) {
+                    csv.printf(Locale.ROOT, "%d,\"%s\",%.2f,%.2f,%.2f,%.2f,%d,%06x,%06x\n", batch.getPageNumbers()[i], batch.getUnicodes()[i],
+                            batch.getXs()[i], batch.getYs()[i], batch.getWidths()[i], batch.getHeights()[i],
+                            batch.getRenderingModes()[i], batch.getFillRgbs()[i], batch.getStrokeRgbs()[i]);
+                }
+                count[0] += batch.size();
+            });
+
+            ColorTextStripper stripper = new ColorTextStripper();
+            stripper.setGlyphConsumer(columns);
+            stripper.writeText(document, new StringWriter());
+            columns.flush();
+
+            String text = new ColorTextStripper().getText(document);
+            int glyphs = text.length() - text.replace("{", "").length();
+            Assert.assertEquals("Number of glyph records", glyphs, count[0]);
+        }
+    }
 }
@@ -10,6 +10,7 @@ import java.util.List;
 
 import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -69,4 +70,103 @@ public class ExtractTextSections
             Files.write(new File(RESULT_FOLDER, "Wang05a.txt").toPath(), texts);
         }
     }
+
+    /**
+     * <a href="http://stackoverflow.com/questions/41654518/how-to-read-pdf-departmentsheader-abstract-refrences-with-pdfbox">
+     * How to read PDF departments(header,abstract,refrences) With PDFBox?
+     * </a>
+     * <br/>
+     * <a href="http://merlot.usc.edu/csac-f06/papers/Wang05a.pdf">
+     * Wang05a.pdf
+     * </a>
+     * <p>
+     * This test uses feature based section definitions which are evaluated once
+     * per line class and checks that they recognize the same sections as the
+     * equivalent line predicates in {@link #testWang05a()}.
+     * </p>
+     */
+    @Test
+    public void testWang05aByFeatures() throws IOException
+    {
+        List<TextSectionDefinition> lineDefinitions = Arrays.asList(
+                new TextSectionDefinition("Titel", x->x.get(0).get(0).getFont().getName().contains("CMBX12"), MultiLine.singleLine, false),
+                new TextSectionDefinition("Authors", x->x.get(0).get(0).getFont().getName().contains("CMR10"), MultiLine.multiLine, false),
+                new TextSectionDefinition("Institutions", x->x.get(0).get(0).getFont().getName().contains("CMR9"), MultiLine.multiLine, false),
+                new TextSectionDefinition("Addresses", x->x.get(0).get(0).getFont().getName().contains("CMTT9"), MultiLine.multiLine, false),
+                new TextSectionDefinition("Abstract", x->x.get(0).get(0).getFont().getName().contains("CMBX9"), MultiLine.multiLineIntro, false),
+                new TextSectionDefinition("Section", x->x.get(0).get(0).getFont().getName().contains("CMBX12"), MultiLine.multiLineHeader, true)
+                );
+        List<TextSectionDefinition> featureDefinitions = Arrays.asList(
+                TextSectionDefinition.byFeatures("Titel", x->x.getFontName().contains("CMBX12"), MultiLine.singleLine, false),
+                TextSectionDefinition.byFeatures("Authors", x->x.getFontName().contains("CMR10"), MultiLine.multiLine, false),
+                TextSectionDefinition.byFeatures("Institutions", x->x.getFontName().contains("CMR9"), MultiLine.multiLine, false),
+                TextSectionDefinition.byFeatures("Addresses", x->x.getFontName().contains("CMTT9"), MultiLine.multiLine, false),
+                TextSectionDefinition.byFeatures("Abstract", x->x.getFontName().contains("CMBX9"), MultiLine.multiLineIntro, false),
+                TextSectionDefinition.byFeatures("Section", x->x.getFontName().contains("CMBX12"), MultiLine.multiLineHeader, true)
+                );
+        try (   InputStream resource = getClass().getResourceAsStream("Wang05a.pdf")    )
+        {
+            PDDocument document = Loader.loadPDF(resource);
+            PDFTextSectionStripper lineStripper = new PDFTextSectionStripper(lineDefinitions);
+            lineStripper.getText(document);
+            PDFTextSectionStripper featureStripper = new PDFTextSectionStripper(featureDefinitions);
+            featureStripper.getText(document);
+
+            List<String> texts = new ArrayList<>();
+            for (TextSection textSection : featureStripper.getSections())
+                texts.add(textSection.toString());
+            Files.write(new File(RESULT_FOLDER, "Wang05a-features.txt").toPath(), texts);
+
+            Assert.assertEquals("Section count", lineStripper.getSections().size(), featureStripper.getSections().size());
+            for (int i = 0; i < texts.size(); i++)
+                Assert.assertEquals("Section " + i, lineStripper.getSections().get(i).toString(), texts.get(i));
+        }
+    }
+
+    /**
+     * <a href="http://stackoverflow.com/questions/41654518/how-to-read-pdf-departmentsheader-abstract-refrences-with-pdfbox">
+     * How to read PDF departments(header,abstract,refrences) With PDFBox?
+     * </a>
+     * <br/>
+     * <a href="http://merlot.usc.edu/csac-f06/papers/Wang05a.pdf">
+     * Wang05a.pdf
+     * </a>
+     * <p>
+     * This test receives the sections as {@link TextSectionSummary} instances from a
+     * {@link PDFTextSectionStripper.SectionListener} while extracting and checks
+     * them against the collected sections.
+     * </p>
+     */
+    @Test
+    public void testWang05aStreaming() throws IOException
+    {
+        List<TextSectionDefinition> sectionDefinitions = Arrays.asList(
+                TextSectionDefinition.byFeatures("Titel", x->x.getFontName().contains("CMBX12"), MultiLine.singleLine, false),
+                TextSectionDefinition.byFeatures("Authors", x->x.getFontName().contains("CMR10"), MultiLine.multiLine, false),
+                TextSectionDefinition.byFeatures("Institutions", x->x.getFontName().contains("CMR9"), MultiLine.multiLine, false),
+                TextSectionDefinition.byFeatures("Addresses", x->x.getFontName().contains("CMTT9"), MultiLine.multiLine, false),
+                TextSectionDefinition.byFeatures("Abstract", x->x.getFontName().contains("CMBX9"), MultiLine.multiLineIntro, false),
+                TextSectionDefinition.byFeatures("Section", x->x.getFontName().contains("CMBX12"), MultiLine.multiLineHeader, true)
+                );
+        try (   InputStream resource = getClass().getResourceAsStream("Wang05a.pdf")    )
+        {
+            PDDocument document = Loader.loadPDF(resource);
+            PDFTextSectionStripper collectingStripper = new PDFTextSectionStripper(sectionDefinitions);
+            collectingStripper.getText(document);
+
+            List<TextSectionSummary> summaries = new ArrayList<>();
+            PDFTextSectionStripper streamingStripper = new PDFTextSectionStripper(sectionDefinitions);
+            streamingStripper.setSectionListener(summaries::add);
+            streamingStripper.process(document);
+
+            Assert.assertTrue("Sections collected in streaming mode", streamingStripper.getSections().isEmpty());
+            Assert.assertEquals("Section count", collectingStripper.getSections().size(), summaries.size());
+            for (int i = 0; i < summaries.size(); i++)
+            {
+                TextSectionSummary summary = summaries.get(i);
+                Assert.assertEquals("Section " + i, collectingStripper.getSections().get(i).toString(), summary.toString());
+                System.out.printf("%s: pages %d-%d, %d body lines\n", summary.getName(), summary.getFirstPageNumber(), summary.getLastPageNumber(), summary.getBody().size());
+            }
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package mkl.testarea.pdfbox2.extract;
 
+import java.awt.Color;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -9,7 +10,12 @@ import java.util.Collections;
 
 import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
 import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -289,4 +295,66 @@ public class ExtractVisibleText {
             Files.write(new File(RESULT_FOLDER, "FooterText.txt").toPath(), Collections.singleton(text));
         }
     }
+
+    /**
+     * <a href="https://stackoverflow.com/questions/63936154/how-to-identify-and-remove-hidden-text-from-the-pdf-using-pdfbox-java">
+     * How to identify and remove hidden text from the PDF using PDFBox java
+     * </a>
+     * <p>
+     * This test checks the deferred occlusion mode of the {@link PDFVisibleTextStripper}
+     * with a white box drawn over a text line afterwards, a text line drawn on top of a
+     * box drawn before, and many small fills as in charts. The text under the white box
+     * is dropped, the text on top of the box is kept, and the result is the same as in
+     * the default mode.
+     * </p>
+     */
+    @Test
+    public void testDeferredOcclusionWhiteBoxOverlay() throws IOException {
+        try (   PDDocument document = new PDDocument()  ) {
+            PDPage page = new PDPage(PDRectangle.A4);
+            document.addPage(page);
+            try (   PDPageContentStream canvas = new PDPageContentStream(document, page)  ) {
+                canvas.setFont(PDType1Font.HELVETICA, 12);
+                canvas.beginText();
+                canvas.newLineAtOffset(50, 700);
+                canvas.showText("Redacted text");
+                canvas.endText();
+
+                canvas.setNonStrokingColor(Color.LIGHT_GRAY);
+                canvas.addRect(40, 640, 200, 30);
+                canvas.fill();
+                canvas.setNonStrokingColor(Color.BLACK);
+                canvas.beginText();
+                canvas.newLineAtOffset(50, 650);
+                canvas.showText("Text on a box");
+                canvas.endText();
+
+                canvas.beginText();
+                canvas.newLineAtOffset(50, 600);
+                canvas.showText("Text among chart bars");
+                canvas.endText();
+                for (int i = 0; i < 500; i++) {
+                    canvas.addRect(300 + (i % 50) * 5, 500 + (i / 50) * 5, 2, 2);
+                    canvas.fill();
+                }
+
+                canvas.setNonStrokingColor(Color.WHITE);
+                canvas.addRect(40, 690, 200, 30);
+                canvas.fill();
+            }
+
+            PDFVisibleTextStripper stripper = new PDFVisibleTextStripper(true);
+            stripper.setDeferOcclusion(true);
+            String text = stripper.getText(document);
+            String immediateText = new PDFVisibleTextStripper(true).getText(document);
+
+            System.out.printf("\n*\n* white box overlay, deferred occlusion\n*\n%s\n", text);
+            Files.write(new File(RESULT_FOLDER, "WhiteBoxOverlay-deferred.txt").toPath(), Collections.singleton(text));
+
+            Assert.assertFalse("Text under the white box", text.contains("Redacted"));
+            Assert.assertTrue("Text on top of the box", text.contains("Text on a box"));
+            Assert.assertTrue("Text among chart bars", text.contains("Text among chart bars"));
+            Assert.assertEquals("Deferred and immediate occlusion", immediateText, text);
+        }
+    }
 }
@@ -1,16 +1,21 @@
 // $Id$
 package mkl.testarea.pdfbox2.extract;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.pdfbox.text.TextPosition;
 import org.apache.pdfbox.util.Matrix;
+import org.junit.Assert;
+import org.junit.BeforeClass;
 import org.junit.Test;
 
 /**
@@ -18,6 +23,14 @@ import org.junit.Test;
  */
 public class SearchSubword
 {
+    final static File RESULT_FOLDER = new File("target/test-outputs", "extract");
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception
+    {
+        RESULT_FOLDER.mkdirs();
+    }
+
     /**
      * <a href="http://stackoverflow.com/questions/35937774/how-to-search-some-specific-string-or-a-word-and-there-coordinates-from-a-pdf-do">
      * How to search some specific string or a word and there coordinates from a pdf document in java
@@ -59,6 +72,121 @@ public class SearchSubword
         }
     }
     
+    /**
+     * <a href="http://stackoverflow.com/questions/35937774/how-to-search-some-specific-string-or-a-word-and-there-coordinates-from-a-pdf-do">
+     * How to search some specific string or a word and there coordinates from a pdf document in java
+     * </a>
+     * <br/>
+     * Variables.pdf
+     * <p>
+     * This test searches all terms at once in a {@link SearchableTextSequence} per page,
+     * both with a {@link KeywordMatcher} and with a {@link Pattern}, and checks the hits
+     * against those of {@link #findSubwordsImproved(PDDocument, int, String)}.
+     * </p>
+     */
+    @Test
+    public void testVariablesKeywords() throws IOException
+    {
+        try (   InputStream resource = getClass().getResourceAsStream("Variables.pdf");
+                PDDocument document = Loader.loadPDF(resource);    )
+        {
+            System.out.println("\nVariables.pdf (keywords)\n------------------------\n");
+            List<String> searchTerms = Arrays.asList("${var1}", "${var 2}");
+            KeywordMatcher keywordMatcher = new KeywordMatcher(searchTerms, false);
+            Pattern pattern = Pattern.compile("\\$\\{var ?[12]\\}");
+            for (int page = 1; page <= document.getNumberOfPages(); page++)
+            {
+                SearchableTextSequence sequence = buildSequence(document, page);
+                List<SearchableTextSequence.Match> keywordHits = sequence.find(keywordMatcher);
+                List<SearchableTextSequence.Match> patternHits = sequence.find(pattern);
+                Assert.assertEquals("Keyword and pattern hit count", patternHits.size(), keywordHits.size());
+
+                int expected = 0;
+                for (String searchTerm : searchTerms)
+                    expected += findSubwordsImproved(document, page, searchTerm).size();
+                Assert.assertEquals("Hit count", expected, keywordHits.size());
+
+                for (int i = 0; i < keywordHits.size(); i++)
+                {
+                    SearchableTextSequence.Match hit = keywordHits.get(i);
+                    Assert.assertEquals("Hit text", hit.getTerm(), hit.getText());
+                    Assert.assertEquals("Pattern hit bounds", hit.getBounds(), patternHits.get(i).getBounds());
+                    System.out.printf("  Page %s '%s' at %s\n", page, hit.getTerm(), hit.getBounds());
+                }
+            }
+        }
+    }
+
+    /**
+     * <a href="http://stackoverflow.com/questions/35937774/how-to-search-some-specific-string-or-a-word-and-there-coordinates-from-a-pdf-do">
+     * How to search some specific string or a word and there coordinates from a pdf document in java
+     * </a>
+     * <br/>
+     * Variables.pdf
+     * <p>
+     * This test builds a {@link TextHitIndex} in a single extraction pass, stores it,
+     * and answers the queries from the stored index without parsing the document again.
+     * </p>
+     */
+    @Test
+    public void testVariablesIndex() throws IOException
+    {
+        File indexFile = new File(RESULT_FOLDER, "Variables.hits");
+        try (   InputStream resource = getClass().getResourceAsStream("Variables.pdf");
+                PDDocument document = Loader.loadPDF(resource);    )
+        {
+            TextHitIndex index = TextHitIndex.build(document);
+            index.write(indexFile);
+        }
+
+        TextHitIndex index = TextHitIndex.read(indexFile);
+        System.out.printf("\nVariables.pdf (index, %d bytes)\n-----------------------\n\n", indexFile.length());
+        for (String query : Arrays.asList("var1", "var 2"))
+        {
+            List<TextHitIndex.Hit> hits = index.find(query);
+            System.out.printf("* Looking for '%s'\n", query);
+            for (TextHitIndex.Hit hit : hits)
+                System.out.printf("  %s\n", hit);
+            // the ${...} occurrences of the variable plus its quoted mention in the introduction
+            Assert.assertEquals("Hits of " + query, query.equals("var1") ? 5 : 9, hits.size());
+        }
+        Assert.assertTrue("Hits of unknown word", index.find("var3").isEmpty());
+    }
+
+    SearchableTextSequence buildSequence(PDDocument document, int page) throws IOException
+    {
+        final SearchableTextSequence.Builder builder = new SearchableTextSequence.Builder();
+        PDFTextStripper stripper = new PDFTextStripper()
+        {
+            @Override
+            protected void writeString(String text, List<TextPosition> textPositions) throws IOException
+            {
+                builder.add(textPositions);
+                super.writeString(text, textPositions);
+            }
+
+            @Override
+            protected void writeWordSeparator() throws IOException
+            {
+                builder.addSeparator(' ');
+                super.writeWordSeparator();
+            }
+
+            @Override
+            protected void writeLineSeparator() throws IOException
+            {
+                builder.addSeparator(' ');
+                super.writeLineSeparator();
+            }
+        };
+
+        stripper.setSortByPosition(true);
+        stripper.setStartPage(page);
+        stripper.setEndPage(page);
+        stripper.getText(document);
+        return builder.build();
+    }
+
     void printSubwords(PDDocument document, String searchTerm) throws IOException
     {
         System.out.printf("* Looking for '%s'\n", searchTerm);
@@ -1,19 +1,29 @@
 package mkl.testarea.pdfbox2.merge;
 
 import java.awt.Color;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.PDPageContentStream.AppendMode;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
 import org.apache.pdfbox.pdmodel.font.PDType1Font;
 import org.apache.pdfbox.util.Matrix;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -67,6 +77,81 @@ public class DenseMerging {
                         document1, document2, document3, document4, document5));
     }
 
+    /**
+     * <a href="https://stackoverflow.com/questions/54283827/pdf-files-merge-remove-blank-at-end-of-page-i-am-using-pdfbox-v2-0-13-to-achi">
+     * PDF files merge : remove blank at end of page. I am using PDFBox v2.0.13 to achieve that
+     * </a>
+     * <p>
+     * This test checks the streaming mode of the {@link PdfDenseMergeTool}
+     * which opens each input only while its pages are placed. It uses the
+     * same inputs as {@link #testWithText()}, this time from files.
+     * </p>
+     */
+    @Test
+    public void testStreamingWithText() throws IOException {
+        List<PdfDenseMergeTool.InputSupplier> inputs = new ArrayList<>();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 1; i <= 5; i++) {
+                File file = new File(RESULT_FOLDER, String.format("Test Text Streaming %d.pdf", i));
+                if (round == 0) {
+                    try (   PDDocument document = createTextDocument(new PDRectangle(0, 0, 400, 600), 
+                                Matrix.getTranslateInstance(30 + 10 * i, 200 + 20 * i),
+                                "Doc " + i + " line 1", "Doc " + i + " line 2", "Doc " + i + " line 3")) {
+                        document.save(file);
+                    }
+                }
+                inputs.add(PdfDenseMergeTool.fromFile(file));
+            }
+        }
+
+        PdfDenseMergeTool tool = new PdfDenseMergeTool(PDRectangle.A4, 30, 30, 10);
+        try (   OutputStream result = new FileOutputStream(new File(RESULT_FOLDER, "Merge with Text, streaming.pdf"))) {
+            tool.merge(result, inputs, MemoryUsageSetting.setupMixed(64 * 1024));
+        }
+    }
+
+    /**
+     * <a href="https://stackoverflow.com/questions/60052967/how-to-dense-merge-pdf-files-using-pdfbox-2-without-whitespace-near-page-breaks">
+     * How to dense merge PDF files using PDFBox 2 without whitespace near page breaks?
+     * </a>
+     * <p>
+     * This test checks that the parallel page analysis of the {@link PdfDenseMergeTool}
+     * and the {@link PdfVeryDenseMergeTool} creates the same results as the sequential
+     * analysis. As the trailer ID is derived from the current time, it is removed before
+     * comparison.
+     * </p>
+     */
+    @Test
+    public void testParallelAnalysis() throws IOException {
+        List<PdfDenseMergeTool.InputSupplier> inputs = new ArrayList<>();
+        for (int i = 1; i <= 24; i++) {
+            File file = new File(RESULT_FOLDER, String.format("Test Text Parallel %d.pdf", i));
+            try (   PDDocument document = createTextDocument(new PDRectangle(0, 0, 400, 600), 
+                        Matrix.getTranslateInstance(20 + 5 * i, 100 + 15 * i),
+                        "Doc " + i + " line 1", "Doc " + i + " line 2", "Doc " + i + " line 3")) {
+                document.save(file);
+            }
+            inputs.add(PdfDenseMergeTool.fromFile(file));
+        }
+
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        new PdfDenseMergeTool(PDRectangle.A4, 30, 30, 10).merge(sequential, inputs, MemoryUsageSetting.setupMainMemoryOnly());
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        new PdfDenseMergeTool(PDRectangle.A4, 30, 30, 10).merge(parallel, inputs, MemoryUsageSetting.setupMainMemoryOnly(), 4);
+        Assert.assertEquals("Dense merge with parallel analysis differs", withoutId(sequential), withoutId(parallel));
+
+        sequential = new ByteArrayOutputStream();
+        new PdfVeryDenseMergeTool(PDRectangle.A4, 30, 30, 10).merge(sequential, inputs, MemoryUsageSetting.setupMainMemoryOnly());
+        parallel = new ByteArrayOutputStream();
+        new PdfVeryDenseMergeTool(PDRectangle.A4, 30, 30, 10).merge(parallel, inputs, MemoryUsageSetting.setupMainMemoryOnly(), 4);
+        Assert.assertEquals("Very dense merge with parallel analysis differs", withoutId(sequential), withoutId(parallel));
+        Files.write(new File(RESULT_FOLDER, "Merge with Text, very dense, parallel.pdf").toPath(), parallel.toByteArray());
+    }
+
+    String withoutId(ByteArrayOutputStream pdf) {
+        return new String(pdf.toByteArray(), StandardCharsets.ISO_8859_1).replaceAll("/ID \\[<\\p{XDigit}*> <\\p{XDigit}*>\\]", "");
+    }
+
     PDDocument createTextDocument(PDRectangle size, Matrix textMatrix, String... lines) throws IOException {
         PDDocument document = new PDDocument();
         PDPage page = new PDPage(size);
@@ -196,4 +281,100 @@ public class DenseMerging {
                         document1, document2, document3, document4, document5, document6,
                         document1, document2, document3, document4, document5, document6));
     }
+
+    /**
+     * <a href="https://stackoverflow.com/questions/60052967/how-to-dense-merge-pdf-files-using-pdfbox-2-without-whitespace-near-page-breaks">
+     * How to dense merge PDF files using PDFBox 2 without whitespace near page breaks?
+     * </a>
+     * <p>
+     * This test checks the {@link PdfVeryDenseMergeTool} packing layout which
+     * may reorder the source slices to reduce the number of target pages. The
+     * inputs contain indivisible blocks of very different heights, so source
+     * order wastes space at the bottom of the target pages.
+     * </p>
+     */
+    @Test
+    public void testVeryDenseMergingPacked() throws IOException {
+        List<PDDocument> documents = new ArrayList<>();
+        try {
+            for (int i = 1; i <= 30; i++) {
+                PDDocument document = new PDDocument();
+                documents.add(document);
+                PDPage page = new PDPage(new PDRectangle(0, 0, 400, 600));
+                document.addPage(page);
+                try (   PDPageContentStream canvas = new PDPageContentStream(document, page)) {
+                    canvas.setNonStrokingColor(new Color(50 * (i % 5), 40 * (i % 6), 30 * (i % 7)));
+                    float height = 100 + (i * 137) % 400;
+                    canvas.moveTo(50, 50);
+                    canvas.lineTo(350, 50);
+                    canvas.lineTo(350, 50 + height);
+                    canvas.lineTo(50, 50 + height);
+                    canvas.closePath();
+                    canvas.fill();
+                }
+            }
+
+            ByteArrayOutputStream inOrder = new ByteArrayOutputStream();
+            new PdfVeryDenseMergeTool(PDRectangle.A4, 30, 30, 10).merge(inOrder, documents);
+
+            PdfVeryDenseMergeTool tool = new PdfVeryDenseMergeTool(PDRectangle.A4, 30, 30, 10);
+            tool.setKeepSourceOrder(false);
+            tool.setLookaheadWindow(12);
+            ByteArrayOutputStream packed = new ByteArrayOutputStream();
+            tool.merge(packed, documents);
+            Files.write(new File(RESULT_FOLDER, "Merge of Blocks, very dense, packed.pdf").toPath(), packed.toByteArray());
+
+            try (   PDDocument inOrderDocument = PDDocument.load(inOrder.toByteArray());
+                    PDDocument packedDocument = PDDocument.load(packed.toByteArray())) {
+                System.out.printf("Pages in source order: %d, packed: %d\n", inOrderDocument.getNumberOfPages(), packedDocument.getNumberOfPages());
+                Assert.assertEquals("Pages in source order", 15, inOrderDocument.getNumberOfPages());
+                Assert.assertEquals("Pages packed", 12, packedDocument.getNumberOfPages());
+                Assert.assertTrue("Packing did not save pages", packedDocument.getNumberOfPages() < inOrderDocument.getNumberOfPages());
+            }
+        } finally {
+            for (PDDocument document : documents)
+                document.close();
+        }
+    }
+
+    /**
+     * <a href="https://stackoverflow.com/questions/53420344/ho-to-reduce-the-size-of-merged-pdf-a1-b-files-with-pdfbox-or-other-java-library">
+     * Ho to reduce the size of merged PDF A1/b Files with pdfbox or other java library
+     * </a>
+     * <p>
+     * This test checks the interning of imported objects in the {@link PdfDenseMergeTool}.
+     * All inputs embed the same font program, with interning it is stored only once.
+     * </p>
+     */
+    @Test
+    public void testWithSameEmbeddedFont() throws IOException {
+        List<PDDocument> documents = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            PDDocument document = new PDDocument();
+            PDPage page = new PDPage(new PDRectangle(0, 0, 400, 600));
+            document.addPage(page);
+            try (   InputStream fontResource = getClass().getResourceAsStream("/mkl/testarea/pdfbox2/content/NotoSans-Regular.ttf");
+                    PDPageContentStream canvas = new PDPageContentStream(document, page)) {
+                PDFont font = PDType0Font.load(document, fontResource, false);
+                canvas.beginText();
+                canvas.setFont(font, 12);
+                canvas.newLineAtOffset(30, 300);
+                canvas.showText("Document " + i);
+                canvas.endText();
+            }
+            documents.add(document);
+        }
+
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        new PdfDenseMergeTool(PDRectangle.A4, 30, 30, 10).merge(plain, documents);
+
+        PdfDenseMergeTool tool = new PdfDenseMergeTool(PDRectangle.A4, 30, 30, 10);
+        tool.setInternImportedObjects(true);
+        ByteArrayOutputStream interned = new ByteArrayOutputStream();
+        tool.merge(interned, documents);
+        Files.write(new File(RESULT_FOLDER, "Merge with same embedded font, interned.pdf").toPath(), interned.toByteArray());
+
+        System.out.printf("Size without interning: %d, with interning: %d\n", plain.size(), interned.size());
+        Assert.assertTrue("Interning did not reduce size", interned.size() * 5 < plain.size());
+    }
 }
@@ -1,5 +1,9 @@
 package mkl.testarea.pdfbox2.merge;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -22,8 +26,10 @@ import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.cos.COSObject;
 import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.IOUtils;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.text.PDFTextStripper;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -88,6 +94,65 @@ public class OptimizeAfterMerge {
         }
     }
 
+    /**
+     * <a href="https://stackoverflow.com/questions/54978922/why-compress-pdf-programatically-is-undocumented-and-difficult">
+     * why compress pdf programatically is undocumented and difficult
+     * </a>
+     * <br/>
+     * <a href="https://drive.google.com/open?id=1K5gPlB1JbytWj7KMD4V09aU2R6jFoym-">
+     * merged.pdf
+     * </a> as "mergedBee.pdf".
+     * <p>
+     * This test applies the single pass {@link PdfMergeOptimizer} which
+     * is the main source successor of {@link #optimize(PDDocument)}.
+     * </p>
+     */
+    @Test
+    public void testPdfMergeOptimizerMergedBee() throws IOException {
+        byte[] source;
+        try (   InputStream resource = getClass().getResourceAsStream("mergedBee.pdf")  ) {
+            source = IOUtils.toByteArray(resource);
+        }
+
+        int pageCount;
+        String text;
+        byte[] multiPass;
+        try (   PDDocument pdDocument = Loader.loadPDF(source)  ) {
+            pageCount = pdDocument.getNumberOfPages();
+            text = new PDFTextStripper().getText(pdDocument);
+            optimize(pdDocument);
+            multiPass = save(pdDocument);
+        }
+
+        byte[] singlePass;
+        try (   PDDocument pdDocument = Loader.loadPDF(source)  ) {
+            PdfMergeOptimizer optimizer = new PdfMergeOptimizer();
+            optimizer.optimize(pdDocument);
+            System.out.printf("Merged objects: %d, saved stream bytes: %d, distinct objects: %d\n",
+                    optimizer.getMergedObjects(), optimizer.getSavedStreamBytes(), optimizer.getDistinctObjects());
+            assertTrue("Expected duplicates to be merged", optimizer.getMergedObjects() > 0);
+
+            pdDocument.save(new File(RESULT_FOLDER, "mergedBee-optimized-single-pass.pdf"));
+            singlePass = save(pdDocument);
+        }
+
+        System.out.printf("Input: %d bytes, multi pass: %d bytes, single pass: %d bytes\n",
+                source.length, multiPass.length, singlePass.length);
+        assertTrue("Expected the single pass result to be smaller than the input", singlePass.length < source.length);
+        assertTrue("Expected the single pass result to be no larger than the multi pass result", singlePass.length <= multiPass.length);
+
+        try (   PDDocument pdDocument = Loader.loadPDF(singlePass)  ) {
+            assertEquals(pageCount, pdDocument.getNumberOfPages());
+            assertEquals(text, new PDFTextStripper().getText(pdDocument));
+        }
+    }
+
+    static byte[] save(PDDocument pdDocument) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        pdDocument.save(result);
+        return result.toByteArray();
+    }
+
     /**
      * <a href="https://stackoverflow.com/questions/53420344/ho-to-reduce-the-size-of-merged-pdf-a1-b-files-with-pdfbox-or-other-java-library">
      * Ho to reduce the size of merged PDF A1/b Files with pdfbox or other java library
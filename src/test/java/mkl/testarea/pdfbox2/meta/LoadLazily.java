@@ -0,0 +1,217 @@
+package mkl.testarea.pdfbox2.meta;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.pdfbox.LazyDocument;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.interactive.action.PDActionGoTo;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationLink;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget;
+import org.apache.pdfbox.pdmodel.interactive.digitalsignature.PDSignature;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageFitDestination;
+import org.apache.pdfbox.pdmodel.interactive.form.PDAcroForm;
+import org.apache.pdfbox.pdmodel.interactive.form.PDField;
+import org.apache.pdfbox.pdmodel.interactive.form.PDSignatureField;
+import org.apache.pdfbox.pdmodel.interactive.form.PDTextField;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * <p>
+ * This test class compares the results of {@link Loader#loadPDFLazily(File, MemoryUsageSetting)}
+ * with those of {@link Loader#loadPDF(File)}.
+ * </p>
+ *
+ * @author mkl
+ */
+public class LoadLazily {
+    final static File RESULT_FOLDER = new File("target/test-outputs", "meta");
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        RESULT_FOLDER.mkdirs();
+    }
+
+    /**
+     * <p>
+     * This test compares page count, page texts and resources, and form
+     * field values of a 16 page document with internal links and a form.
+     * </p>
+     */
+    @Test
+    public void testCompareTestSemnat() throws IOException {
+        compare(new File("src/test/resources/mkl/testarea/pdfbox2/form/test-semnat.pdf"));
+    }
+
+    /**
+     * <p>
+     * This test compares page count, page texts and resources, and form
+     * field values of a filled in form.
+     * </p>
+     */
+    @Test
+    public void testCompareFormBee2() throws IOException {
+        compare(new File("src/test/resources/mkl/testarea/pdfbox2/form/formBee2.pdf"));
+    }
+
+    /**
+     * <p>
+     * This test checks that neither retrieving a page with links to other pages
+     * nor retrieving a form with a widget action pointing to another page parses
+     * the contents of the pages pointed to.
+     * </p>
+     */
+    @Test
+    public void testInternalLinksStayUnparsed() throws IOException {
+        File file = new File(RESULT_FOLDER, "internal-links.pdf");
+        try (   PDDocument document = new PDDocument()) {
+            for (int i = 0; i < 3; i++) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                try (   PDPageContentStream canvas = new PDPageContentStream(document, page)) {
+                    canvas.beginText();
+                    canvas.setFont(PDType1Font.HELVETICA, 12);
+                    canvas.newLineAtOffset(50, 800);
+                    canvas.showText("Page " + (i + 1));
+                    canvas.endText();
+                }
+            }
+            PDPage first = document.getPage(0);
+
+            PDAnnotationLink destinationLink = new PDAnnotationLink();
+            destinationLink.setRectangle(new PDRectangle(50, 700, 100, 20));
+            PDPageFitDestination destination = new PDPageFitDestination();
+            destination.setPage(document.getPage(2));
+            destinationLink.setDestination(destination);
+            first.getAnnotations().add(destinationLink);
+
+            PDAnnotationLink actionLink = new PDAnnotationLink();
+            actionLink.setRectangle(new PDRectangle(50, 650, 100, 20));
+            PDPageFitDestination actionDestination = new PDPageFitDestination();
+            actionDestination.setPage(document.getPage(1));
+            PDActionGoTo action = new PDActionGoTo();
+            action.setDestination(actionDestination);
+            actionLink.setAction(action);
+            first.getAnnotations().add(actionLink);
+
+            PDAcroForm acroForm = new PDAcroForm(document);
+            document.getDocumentCatalog().setAcroForm(acroForm);
+            acroForm.setDefaultResources(new PDResources());
+            acroForm.getDefaultResources().put(COSName.getPDFName("Helv"), PDType1Font.HELVETICA);
+            acroForm.setDefaultAppearance("/Helv 12 Tf 0 g");
+            PDTextField field = new PDTextField(acroForm);
+            field.setPartialName("lazy");
+            acroForm.getFields().add(field);
+            PDAnnotationWidget widget = field.getWidgets().get(0);
+            widget.setRectangle(new PDRectangle(50, 600, 200, 20));
+            widget.setPage(first);
+            PDPageFitDestination widgetDestination = new PDPageFitDestination();
+            widgetDestination.setPage(document.getPage(2));
+            PDActionGoTo widgetAction = new PDActionGoTo();
+            widgetAction.setDestination(widgetDestination);
+            widget.setAction(widgetAction);
+            first.getAnnotations().add(widget);
+            field.setValue("value");
+
+            document.save(file);
+        }
+
+        try (   LazyDocument lazyDocument = Loader.loadPDFLazily(file, MemoryUsageSetting.setupMainMemoryOnly())) {
+            Assert.assertEquals("Page count", 3, lazyDocument.getNumberOfPages());
+            PDPage page = lazyDocument.getPage(0);
+            Assert.assertEquals("Page text", "Page 1", text(page).trim());
+            PDAcroForm acroForm = lazyDocument.getAcroForm();
+            Assert.assertEquals("Field value", "value", acroForm.getField("lazy").getValueAsString());
+
+            COSArray annotations = (COSArray) page.getCOSObject().getDictionaryObject(COSName.ANNOTS);
+            COSDictionary destinationLink = (COSDictionary) annotations.getObject(0);
+            COSDictionary destinationPage = (COSDictionary) ((COSArray) destinationLink.getDictionaryObject(COSName.DEST)).getObject(0);
+            Assert.assertFalse("Contents of the destination page parsed", isParsed(destinationPage, COSName.CONTENTS));
+            COSDictionary actionLink = (COSDictionary) annotations.getObject(1);
+            COSDictionary action = (COSDictionary) actionLink.getDictionaryObject(COSName.A);
+            COSDictionary actionPage = (COSDictionary) ((COSArray) action.getDictionaryObject(COSName.D)).getObject(0);
+            Assert.assertFalse("Contents of the action destination page parsed", isParsed(actionPage, COSName.CONTENTS));
+            Assert.assertNotSame("Action destination page", destinationPage, actionPage);
+        }
+    }
+
+    void compare(File file) throws IOException {
+        try (   PDDocument document = Loader.loadPDF(file);
+                LazyDocument lazyDocument = Loader.loadPDFLazily(file, MemoryUsageSetting.setupMainMemoryOnly())) {
+            int pageCount = document.getNumberOfPages();
+            Assert.assertEquals("Page count", pageCount, lazyDocument.getNumberOfPages());
+            for (int index = pageCount - 1; index >= 0; index--) {
+                PDPage page = document.getPage(index);
+                PDPage lazyPage = lazyDocument.getPage(index);
+                Assert.assertEquals("Resources of page " + index, resourceNames(page.getResources()), resourceNames(lazyPage.getResources()));
+                Assert.assertEquals("Text of page " + index, text(page), text(lazyPage));
+            }
+
+            PDAcroForm acroForm = document.getDocumentCatalog().getAcroForm();
+            PDAcroForm lazyAcroForm = lazyDocument.getAcroForm();
+            Assert.assertEquals("Form presence", acroForm != null, lazyAcroForm != null);
+            if (acroForm != null)
+                Assert.assertEquals("Field values", fieldValues(acroForm), fieldValues(lazyAcroForm));
+        }
+    }
+
+    /**
+     * @return the text of the given page or, as some sample pages have broken
+     * content streams, the failure message for comparison.
+     */
+    static String text(PDPage page) throws IOException {
+        try (   PDDocument document = new PDDocument()) {
+            document.addPage(page);
+            return new PDFTextStripper().getText(document);
+        } catch (IOException e) {
+            return "Failure: " + e.getMessage();
+        }
+    }
+
+    static String resourceNames(PDResources resources) {
+        TreeSet<String> names = new TreeSet<>();
+        if (resources != null) {
+            for (COSName name : resources.getFontNames())
+                names.add("Font " + name.getName());
+            for (COSName name : resources.getXObjectNames())
+                names.add("XObject " + name.getName());
+        }
+        return names.toString();
+    }
+
+    static Map<String, String> fieldValues(PDAcroForm acroForm) {
+        Map<String, String> values = new TreeMap<>();
+        for (PDField field : acroForm.getFieldTree()) {
+            if (field instanceof PDSignatureField) {
+                PDSignature signature = ((PDSignatureField) field).getSignature();
+                values.put(field.getFullyQualifiedName(), signature != null ? String.valueOf(signature.getCOSObject().getDictionaryObject(COSName.CONTENTS)) : null);
+            } else {
+                values.put(field.getFullyQualifiedName(), field.getValueAsString());
+            }
+        }
+        return values;
+    }
+
+    static boolean isParsed(COSDictionary dictionary, COSName key) {
+        COSBase item = dictionary.getItem(key);
+        return !(item instanceof COSObject) || ((COSObject) item).getObject() != null;
+    }
+}
@@ -1,13 +1,21 @@
 package mkl.testarea.pdfbox2.split;
 
+import java.awt.geom.Rectangle2D;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.multipdf.Splitter;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -48,4 +56,104 @@ public class TestCustomSplitter {
         }
     }
 
+    /**
+     * <a href="https://stackoverflow.com/questions/58345483/how-to-separate-pdf-based-on-given-intervals">
+     * How to separate pdf based on given intervals
+     * </a>
+     * <p>
+     * Test the {@link CustomSplitter} streaming each part to its own file
+     * using the OP's example values.
+     * </p>
+     */
+    @Test
+    public void testSplitAndSaveForSaiKrishna() throws IOException {
+        try (   InputStream resource = getClass().getResourceAsStream("/mkl/testarea/pdfbox2/analyze/test-rivu.pdf");
+                PDDocument document = Loader.loadPDF(resource)) {
+            CustomSplitter splitter = new CustomSplitter(new int[] {2,6});
+
+            int parts = splitter.split(document, CustomSplitter.toFiles(RESULT_FOLDER, "test-rivu-streamed-%d.pdf"), 2);
+
+            Assert.assertEquals("Number of parts", 3, parts);
+        }
+    }
+
+    /**
+     * <a href="https://stackoverflow.com/questions/58345483/how-to-separate-pdf-based-on-given-intervals">
+     * How to separate pdf based on given intervals
+     * </a>
+     * <p>
+     * Test that the {@link CustomSplitter} streaming parts to a failing sink
+     * reports the failure and closes all the part documents it created.
+     * </p>
+     */
+    @Test
+    public void testSplitAndSaveFailingSink() throws IOException {
+        try (   PDDocument document = new PDDocument()) {
+            for (int i = 0; i < 6; i++)
+                document.addPage(new PDPage(PDRectangle.A4));
+            List<PDDocument> createdParts = new ArrayList<>();
+            CustomSplitter splitter = new CustomSplitter(new int[] {2,4}) {
+                @Override
+                protected PDDocument createNewDocument() throws IOException {
+                    PDDocument part = super.createNewDocument();
+                    createdParts.add(part);
+                    return part;
+                }
+            };
+
+            try {
+                splitter.split(document, partIndex -> { throw new IOException("Sink failure for part " + partIndex); }, 1);
+                Assert.fail("Expected the sink failure to be reported");
+            } catch (IOException e) {
+                Assert.assertTrue("Sink failure reported", e.getMessage().startsWith("Sink failure for part "));
+            }
+
+            Assert.assertFalse("Parts created", createdParts.isEmpty());
+            for (PDDocument part : createdParts)
+                Assert.assertTrue("Part closed", part.getDocument().isClosed());
+        }
+    }
+
+    /**
+     * <a href="https://stackoverflow.com/questions/58345483/how-to-separate-pdf-based-on-given-intervals">
+     * How to separate pdf based on given intervals
+     * </a>
+     * <p>
+     * Test the {@link PredicateSplitter} splitting a statement run at each
+     * change of the customer number in the page header, without split page
+     * numbers determined in a separate pass.
+     * </p>
+     */
+    @Test
+    public void testSplitAtCustomerNumberChange() throws IOException {
+        String[] customers = {"4711", "4711", "4712", "4713", "4713", "4713"};
+        try (   PDDocument document = new PDDocument()) {
+            for (String customer : customers) {
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                try (   PDPageContentStream canvas = new PDPageContentStream(document, page)) {
+                    canvas.beginText();
+                    canvas.setFont(PDType1Font.HELVETICA, 12);
+                    canvas.newLineAtOffset(50, 800);
+                    canvas.showText("Customer: " + customer);
+                    canvas.newLineAtOffset(0, -400);
+                    canvas.showText("Customer: 9999 is mentioned in the body only");
+                    canvas.endText();
+                }
+            }
+
+            PredicateSplitter splitter = new PredicateSplitter(PredicateSplitter.whereChanges("header", Pattern.compile("Customer: (\\d+)")));
+            splitter.addRegion("header", new Rectangle2D.Float(0, 0, 595, 100));
+            List<PDDocument> parts = splitter.split(document);
+
+            Assert.assertEquals("Number of parts", 3, parts.size());
+            int[] expectedPages = {2, 1, 3};
+            for (int i = 0; i < parts.size(); i++) {
+                try (   PDDocument part = parts.get(i)) {
+                    Assert.assertEquals("Pages of part " + i, expectedPages[i], part.getNumberOfPages());
+                    part.save(new File(RESULT_FOLDER, "customers-" + i + ".pdf"));
+                }
+            }
+        }
+    }
 }
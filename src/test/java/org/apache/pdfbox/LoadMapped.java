@@ -0,0 +1,122 @@
+package org.apache.pdfbox;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * This test class compares the results of {@link Loader#loadPDFMapped(File, MemoryUsageSetting)}
+ * and of the {@link MemoryUsageSetting} overloads of {@link Loader#loadPDF(File)}
+ * with those of the plain overloads, and tests reading across the chunks of a
+ * {@link MappedRandomAccessRead}.
+ * </p>
+ *
+ * @author mkl
+ */
+public class LoadMapped {
+    final static File SAMPLE = new File("src/test/resources/mkl/testarea/pdfbox2/meta/sample01.pdf");
+
+    /**
+     * <p>
+     * This test loads a sample via a memory mapping and via the memory usage
+     * setting overloads and compares page count and text with plain loading.
+     * </p>
+     */
+    @Test
+    public void testCompareLoaders() throws IOException {
+        String expected;
+        try (   PDDocument document = Loader.loadPDF(SAMPLE)) {
+            expected = describe(document);
+        }
+
+        try (   PDDocument document = Loader.loadPDFMapped(SAMPLE, MemoryUsageSetting.setupMainMemoryOnly())) {
+            Assert.assertEquals("Mapped", expected, describe(document));
+        }
+        try (   PDDocument document = Loader.loadPDFMapped(SAMPLE, MemoryUsageSetting.setupTempFileOnly())) {
+            Assert.assertEquals("Mapped, temp file", expected, describe(document));
+        }
+        try (   PDDocument document = Loader.loadPDF(SAMPLE, MemoryUsageSetting.setupTempFileOnly())) {
+            Assert.assertEquals("File, temp file", expected, describe(document));
+        }
+        try (   PDDocument document = Loader.loadPDF(Files.readAllBytes(SAMPLE.toPath()), MemoryUsageSetting.setupMixed(4096))) {
+            Assert.assertEquals("Bytes, mixed", expected, describe(document));
+        }
+        try (   InputStream resource = getClass().getResourceAsStream("/mkl/testarea/pdfbox2/meta/sample01.pdf");
+                PDDocument document = Loader.loadPDF(resource, MemoryUsageSetting.setupMainMemoryOnly())) {
+            Assert.assertEquals("Stream, main memory", expected, describe(document));
+        }
+    }
+
+    /**
+     * <p>
+     * This test parses the sample from a mapping with 1 KB chunks, so many
+     * reads of the parser cross chunk boundaries.
+     * </p>
+     */
+    @Test
+    public void testParseSmallChunks() throws IOException {
+        String expected;
+        try (   PDDocument document = Loader.loadPDF(SAMPLE)) {
+            expected = describe(document);
+        }
+
+        PDFParser parser = new PDFParser(new MappedRandomAccessRead(SAMPLE, 10), "", null, null,
+                new ScratchFile(MemoryUsageSetting.setupMainMemoryOnly()));
+        parser.parse();
+        try (   PDDocument document = parser.getPDDocument()) {
+            Assert.assertEquals("Mapped, small chunks", expected, describe(document));
+        }
+    }
+
+    /**
+     * <p>
+     * This test reads from a mapping with 16 byte chunks with single byte
+     * reads and block reads crossing chunk boundaries and compares with the
+     * file content.
+     * </p>
+     */
+    @Test
+    public void testReadAcrossChunks() throws IOException {
+        byte[] content = Files.readAllBytes(SAMPLE.toPath());
+        try (   MappedRandomAccessRead read = new MappedRandomAccessRead(SAMPLE, 4)) {
+            Assert.assertEquals("Length", content.length, read.length());
+            Assert.assertEquals("Chunks", (content.length + 15) / 16, read.chunks.length);
+
+            read.seek(13);
+            byte[] crossing = new byte[40];
+            Assert.assertEquals("Bytes read", 40, read.read(crossing));
+            Assert.assertArrayEquals("Crossing read", Arrays.copyOfRange(content, 13, 53), crossing);
+            Assert.assertEquals("Position", 53, read.getPosition());
+
+            read.seek(15);
+            Assert.assertEquals("Last byte of chunk", content[15] & 0xff, read.read());
+            Assert.assertEquals("Peeked first byte of chunk", content[16] & 0xff, read.peek());
+            Assert.assertEquals("First byte of chunk", content[16] & 0xff, read.read());
+
+            read.seek(content.length - 5);
+            byte[] tail = new byte[10];
+            Assert.assertEquals("Bytes read at end", 5, read.read(tail));
+            Assert.assertArrayEquals("Tail", Arrays.copyOfRange(content, content.length - 5, content.length), Arrays.copyOf(tail, 5));
+            Assert.assertTrue("EOF", read.isEOF());
+            Assert.assertEquals("Read at end", -1, read.read());
+
+            read.seek(0);
+            Assert.assertArrayEquals("Full content", content, read.readFully(content.length));
+        }
+    }
+
+    static String describe(PDDocument document) throws IOException {
+        return document.getNumberOfPages() + " pages\n" + new PDFTextStripper().getText(document);
+    }
+}